@@ -0,0 +1,129 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Times the PlanetMap kernels with both the scalar and the vector
+	implementation of MapKernels, and checks that both give the same
+	values. Run it with "make bench".
+
+	By default, we time maps of 1024x512 and 16384x8192. Other sizes can
+	be given as arguments of the form WIDTHxHEIGHT. Note that a 16384x8192
+	map is 512MB, and we need three of them.
+*/
+
+package ulysses.planet.utilities;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class KernelBenchmark {
+	// The number of times we run each kernel before timing it.
+	private static final int WARMUP_RUNS = 20;
+	// The number of timed runs. We report the fastest.
+	private static final int TIMED_RUNS = 5;
+
+	/*
+		A single kernel call to time.
+	*/
+	private interface Kernel {
+		void run(MapKernels kernels, float[] a, float[] b, float[] c);
+	}
+
+	public static void main(String[] args) {
+		String[] sizes = args.length > 0 ? args : new String[] { "1024x512", "16384x8192" };
+		MapKernels scalar = MapKernels.getScalar();
+		MapKernels vector = MapKernels.getVector();
+
+		if(vector == null) {
+			System.out.println("The Vector API is not available. Run with --add-modules jdk.incubator.vector.");
+			return;
+		}
+
+		System.out.println("Comparing " + scalar.getName() + " against " + vector.getName() + " kernels.");
+
+		for(String size : sizes) {
+			String[] dims = size.split("x");
+			benchmark(Integer.parseInt(dims[0]), Integer.parseInt(dims[1]), scalar, vector);
+		}
+	}
+
+	private static void benchmark(int width, int height, MapKernels scalar, MapKernels vector) {
+		final int len = width * height;
+		float[] a = new float[len];
+		float[] b = new float[len];
+		float[] c = new float[len];
+		Random rand = new Random(len);
+
+		for(int i = 0; i < len; ++i) {
+			a[i] = rand.nextFloat();
+			b[i] = rand.nextFloat();
+		}
+
+		System.out.println();
+		System.out.println(width + "x" + height + " (" + len + " points)");
+		System.out.printf("%-12s %12s %12s %8s%n", "kernel", "scalar ms", "vector ms", "speedup");
+
+		// What combineWith does for two maps.
+		time("combineWith", scalar, vector, a, b, c, (k, x, y, z) -> {
+			k.square(z, x, 0, len);
+			k.addSquare(z, y, 0, len);
+		});
+		time("sqrt", scalar, vector, a, b, c, (k, x, y, z) -> {
+			System.arraycopy(x, 0, z, 0, len);
+			k.sqrt(z, 0, len);
+		});
+		time("scaleBy", scalar, vector, a, b, c, (k, x, y, z) -> {
+			System.arraycopy(x, 0, z, 0, len);
+			k.scale(z, 0.75f, 0, len);
+		});
+		// What normalize does: find the min and max, then normalize.
+		time("normalize", scalar, vector, a, b, c, (k, x, y, z) -> {
+			System.arraycopy(x, 0, z, 0, len);
+			float min = k.min(z, 0, len);
+			k.normalize(z, min, k.max(z, 0, len) - min, 0, len);
+		});
+		time("getMaxVal", scalar, vector, a, b, c, (k, x, y, z) -> z[0] = k.max(x, 0, len));
+		time("getMinVal", scalar, vector, a, b, c, (k, x, y, z) -> z[0] = k.min(x, 0, len));
+		// getCopy used to copy one element at a time. Here, "scalar" is that loop
+		// and "vector" is the bulk copy it uses now.
+		time("getCopy", scalar, vector, a, b, c, (k, x, y, z) -> {
+			if(k == scalar) {
+				for(int i = 0; i < len; ++i)
+					z[i] = x[i];
+			}
+
+			else
+				System.arraycopy(x, 0, z, 0, len);
+		});
+	}
+
+	/*
+		Times kernel with both implementations and prints the fastest run of each.
+		We also check that both leave c with the same values.
+	*/
+	private static void time(String name, MapKernels scalar, MapKernels vector,
+							 float[] a, float[] b, float[] c, Kernel kernel)
+	{
+		double scalarMs = fastestRun(scalar, a, b, c, kernel);
+		float[] scalarResult = c.clone();
+		double vectorMs = fastestRun(vector, a, b, c, kernel);
+		String match = Arrays.equals(scalarResult, c) ? "" : "  MISMATCH";
+
+		System.out.printf("%-12s %12.2f %12.2f %7.2fx%s%n", name, scalarMs, vectorMs, scalarMs / vectorMs, match);
+	}
+
+	private static double fastestRun(MapKernels kernels, float[] a, float[] b, float[] c, Kernel kernel) {
+		long best = Long.MAX_VALUE;
+		long start;
+
+		for(int i = 0; i < WARMUP_RUNS; ++i)
+			kernel.run(kernels, a, b, c);
+
+		for(int i = 0; i < TIMED_RUNS; ++i) {
+			start = System.nanoTime();
+			kernel.run(kernels, a, b, c);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		return best / 1e6;
+	}
+}
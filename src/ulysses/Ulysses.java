@@ -16,8 +16,11 @@ import java.awt.Graphics;
 // TODO: Test code!
 import ulysses.planet.*;
 import ulysses.planet.utilities.generators.*;
+import ulysses.planet.pipeline.WorldPipeline;
 import ulysses.planet.utilities.PlanetMap;
-import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 
@@ -62,7 +65,8 @@ class UlyssesRunnable implements Runnable {
 
 		//long seed = System.nanoTime();
 		long seed = "Ponyri".hashCode();
-		Random rooseBolton = new Random(seed);
+		// Every generator gets its own seed, derived from the world seed.
+		HashRandom rooseBolton = new HashRandom(seed);
 		int w = 1024;
 		int h = 512;
 
@@ -73,14 +77,14 @@ class UlyssesRunnable implements Runnable {
 		PerlinMapGenerator thickness;
 		PerlinMapGenerator orogenics;
 
-		tectonics = new TectonicsMapGenerator(rooseBolton);
+		tectonics = new TectonicsMapGenerator(rooseBolton.deriveSeed(0));
 		tectonics.setNumPlates(60);
 
-		thickness = new PerlinMapGenerator(rooseBolton);
+		thickness = new PerlinMapGenerator(rooseBolton.deriveSeed(1));
 		thickness.setOctaveCount(8);
 		thickness.setPersistence(0.75f);
 
-		orogenics = new PerlinMapGenerator(rooseBolton);
+		orogenics = new PerlinMapGenerator(rooseBolton.deriveSeed(2));
 		orogenics.setOctaveCount(8);
 		orogenics.setPersistence(0.75f);
 
@@ -91,9 +95,8 @@ class UlyssesRunnable implements Runnable {
 		lg.setTectonicsMapGenerator(tectonics);
 		lg.setThicknessMapGenerator(thickness);
 		lg.setOrogenicsMapGenerator(orogenics);
-
-		Lithosphere litho = lg.generateLithosphere();
-		PlanetMap height = litho.getHeightMap(0.63f, 0.37f);
+		// The three maps are independent, so generate them at the same time.
+		lg.setExecutor(ForkJoinPool.commonPool());
 
 		/* HYDROSPHERE */
 		HydrosphereGenerator hg = new HydrosphereGenerator("Squanto".hashCode());
@@ -102,22 +105,21 @@ class UlyssesRunnable implements Runnable {
 		PerlinMapGenerator riverSourceMod;
 		EquatorMapGenerator lat;
 
-		clouds = new PerlinMapGenerator(rooseBolton);
+		clouds = new PerlinMapGenerator(rooseBolton.deriveSeed(3));
 		clouds.setOctaveCount(8);
 		clouds.setPersistence(0.75f);
 
-		riverSourceMod = new PerlinMapGenerator(rooseBolton);
+		riverSourceMod = new PerlinMapGenerator(rooseBolton.deriveSeed(4));
 		riverSourceMod.setOctaveCount(1);
 		riverSourceMod.setPersistence(0.95f);
 
-		lat = new EquatorMapGenerator(rooseBolton);
+		lat = new EquatorMapGenerator(rooseBolton.deriveSeed(5));
 		lat.setWidth(w);
 		lat.setHeight(h);
 		lat.setEquator(h / 2);
 
 		hg.setWidth(w);
 		hg.setHeight(h);
-		hg.setHeightMap(height);
 		hg.setCloudFreqMapGenerator(clouds);
 		hg.setRiverSourceModifierMap(riverSourceMod);
 		hg.setEquatorMapGenerator(lat);
@@ -125,9 +127,25 @@ class UlyssesRunnable implements Runnable {
 		hg.setNumRivers(100);
 		hg.setSeaLevel(0.37f);
 
-		Hydrosphere hydro = hg.generateHydrosphere();
-		PlanetMap precip = hydro.getPrecipitationMap();
-		PlanetMap riverMap = hydro.getRiverMap();
+		/* WORLD */
+		// The hydrosphere maps do not need the lithosphere, so the pipeline
+		// generates them while it generates the lithosphere.
+		WorldPipeline world = new WorldPipeline(lg, 0.63f, 0.37f, hg);
+		ExecutorService stagePool = Executors.newFixedThreadPool(4);
+		boolean made;
+
+		world.setExecutor(stagePool);
+		made = world.run();
+		stagePool.shutdown();
+
+		if(!made) {
+			System.out.println("Failed to generate world");
+			return;
+		}
+
+		PlanetMap height = world.getErodedHeightMap();
+		PlanetMap precip = world.getPrecipitationMap();
+		PlanetMap riverMap = world.getRiverMap();
 
 		BufferedImage colorMap;
 
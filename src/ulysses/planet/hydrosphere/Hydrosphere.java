@@ -30,8 +30,13 @@ package ulysses.planet;
 // Used to store specific hydrosphere data
 // and to compute the Precipitation Map.
 import ulysses.planet.utilities.PlanetMap;
+// Used to combine and smooth the precipitation map.
+import ulysses.planet.utilities.MapExpression;
+import ulysses.planet.utilities.MapBlurrer;
 // Used to find the river of associated points.
 import java.awt.Point;
+// Used to copy the rivers.
+import java.util.Arrays;
 
 public class Hydrosphere {
 	// The dimensions of the world.
@@ -52,6 +57,13 @@ public class Hydrosphere {
 
 	// Stores the rivers of the world.
 	private River[] rivers;
+	// For each point, stores the index of the river that owns it,
+	// or -1 if no river does. Kept up to date by setRiver so
+	// that river lookups do not need to scan every river.
+	private int[] riverOwners;
+	// How the rivers join together. Null until it is built, and
+	// thrown out whenever the rivers change.
+	private RiverNetwork riverNetwork;
 
 	public Hydrosphere(int width, int height) {
 		setWidth(width);
@@ -65,6 +77,31 @@ public class Hydrosphere {
 		this.seaLevel = 0.0f;
 
 		this.rivers = null;
+		this.riverOwners = null;
+		this.riverNetwork = null;
+	}
+
+	/*
+		Returns a new hydrosphere with the same maps, sea level, and rivers as
+		this one. The maps and rivers themselves are shared, not copied, but
+		setting a map or river of the copy does not change this one.
+	*/
+	public Hydrosphere getCopy() {
+		Hydrosphere result = new Hydrosphere(this.width, this.height);
+
+		result.cloudFreqMap = this.cloudFreqMap;
+		result.equatorMap = this.equatorMap;
+		result.approxWaterDist = this.approxWaterDist;
+		result.heightMap = this.heightMap;
+		result.seaLevel = this.seaLevel;
+		result.riverNetwork = this.riverNetwork;
+
+		if(this.rivers != null) {
+			result.rivers = Arrays.copyOf(this.rivers, this.rivers.length);
+			result.riverOwners = Arrays.copyOf(this.riverOwners, this.riverOwners.length);
+		}
+
+		return result;
 	}
 
 	public int getWidth() {
@@ -141,6 +178,11 @@ public class Hydrosphere {
 			return;
 
 		this.rivers = new River[val];
+		this.riverNetwork = null;
+		this.riverOwners = new int[this.width * this.height];
+
+		for(int i = 0; i < this.riverOwners.length; ++i)
+			this.riverOwners[i] = -1;
 	}
 
 	/*
@@ -166,6 +208,11 @@ public class Hydrosphere {
 		This operation can fail if index is invalid, val is null, or
 		the rivers array is null.
 
+		We also mark every point of the river in the river owners map.
+		Note that this means the river should be finished before it is
+		set. Points added to the river afterwards will not be found by
+		getRiverOf.
+
 		ARGUMENTS:
 			index: index into the rivers array.
 			val: the river to set to in the rivers array.
@@ -174,7 +221,19 @@ public class Hydrosphere {
 		if(this.rivers == null || val == null || index < 0 || index >= this.rivers.length)
 			return;
 
-		this.rivers[index] = val;
+		this.riverNetwork = null;
+
+		// Replacing a river means some points may no longer
+		// be owned by it, so we have to rebuild the owners map.
+		if(this.rivers[index] != null) {
+			this.rivers[index] = val;
+			rebuildRiverOwners();
+		}
+
+		else {
+			this.rivers[index] = val;
+			markRiverOwner(index);
+		}
 	}
 
 	/*
@@ -190,22 +249,113 @@ public class Hydrosphere {
 			or the rivers array is null.
 	*/
 	public int getRiverOf(Point point) {
-		if(point == null || this.rivers == null)
+		if(point == null)
+			return -1;
+
+		return getRiverOf((int)point.getX(), (int)point.getY());
+	}
+
+	/*
+		Returns the index of the river that contains the point (x, y).
+
+		ARGUMENTS:
+			(x, y) - the point we want the river of.
+
+		RETURNS:
+			the index of the river that contains (x, y) OR -1 if no river
+			does, (x, y) is out of bounds, or the rivers array is null.
+	*/
+	public int getRiverOf(int x, int y) {
+		if(x < 0 || x >= this.width || y < 0 || y >= this.height)
 			return -1;
 
-		// What we will return. Assume the point
-		// is not associated with any river.
-		int result = -1;
+		return getRiverOf(y * this.width + x);
+	}
+
+	/*
+		Returns the index of the river that contains the point at index,
+		where index is computed with y * width + x.
+
+		ARGUMENTS:
+			index - the index of the point we want the river of.
+
+		RETURNS:
+			the index of the river that contains the point OR -1 if no
+			river does, index is invalid, or the rivers array is null.
+	*/
+	public int getRiverOf(int index) {
+		if(this.riverOwners == null || index < 0 || index >= this.riverOwners.length)
+			return -1;
+
+		return this.riverOwners[index];
+	}
+
+	/*
+		Marks every point of the river at index in the river owners map.
+		If a point is already owned by another river, the river with the
+		smallest index keeps it. This way, getRiverOf gives the same answer
+		as scanning the rivers array in order.
+
+		ARGUMENTS:
+			index - the index of the river to mark.
+	*/
+	private void markRiverOwner(int index) {
+		River river = this.rivers[index];
+		int x, y;
+		int pointIndex;
+
+		for(int i = 0; i < river.getNumPoints(); ++i) {
+			x = river.getX(i);
+			y = river.getY(i);
+
+			if(x < 0 || x >= this.width || y < 0 || y >= this.height)
+				continue;
+
+			pointIndex = y * this.width + x;
+			if(this.riverOwners[pointIndex] == -1 || this.riverOwners[pointIndex] > index)
+				this.riverOwners[pointIndex] = index;
+		}
+	}
+
+	/*
+		Clears the river owners map and marks every river again.
+	*/
+	private void rebuildRiverOwners() {
+		for(int i = 0; i < this.riverOwners.length; ++i)
+			this.riverOwners[i] = -1;
 
 		for(int i = 0; i < this.rivers.length; ++i) {
-			// Found the river. Update result and terminate the loop.
-			if(this.rivers[i] != null && this.rivers[i].containsPoint(point)) {
-				result = i;
-				break;
-			}
+			if(this.rivers[i] != null)
+				markRiverOwner(i);
 		}
+	}
 
-		return result;
+	/*
+		Returns how our rivers join together, or null if it has not been built
+		since the rivers last changed.
+	*/
+	public RiverNetwork getRiverNetwork() {
+		return this.riverNetwork;
+	}
+
+	/*
+		Builds the network of our rivers. Do this once every river is set.
+
+		ARGUMENTS:
+			flowMap - the flow of each point, used for how much water each
+			part of a river carries. If null, or not the size of the world,
+			we use the number of river points that drain through it instead.
+
+		RETURNS:
+			true if the network was built, or false if we have no rivers.
+	*/
+	public boolean buildRiverNetwork(PlanetMap flowMap) {
+		if(this.rivers == null)
+			return false;
+
+		this.riverNetwork = new RiverNetwork(this, flowMap);
+
+		return true;
 	}
 
 	/*
@@ -218,15 +368,13 @@ public class Hydrosphere {
 	*/
 	public PlanetMap getRiverMap() {
 		PlanetMap result = new PlanetMap(this.width, this.height);
+		int len = this.width * this.height;
 
-		for(int x = 0; x < this.width; ++x) {
-			for(int y = 0; y < this.height; ++y) {
-				if(getRiverOf(new Point(x, y)) != -1) {
-					result.setData(x, y, 1);
-				}
-				else
-					result.setData(x, y, 0);
-			}
+		for(int i = 0; i < len; ++i) {
+			if(getRiverOf(i) != -1)
+				result.setData(i, 1);
+			else
+				result.setData(i, 0);
 		}
 
 		return result;
@@ -236,23 +384,19 @@ public class Hydrosphere {
 		//return this.approxWaterDist;
 
 		PlanetMap[] maps = new PlanetMap[2];
-		// So we can scale the cloud map.
-		PlanetMap cloud = this.cloudFreqMap.getCopy();
 		PlanetMap precip;
 		float[] precipLandSizes;
+		// Spreads the precipitation out. A Gaussian with a radius
+		// of 3 spreads it about as much as 5 passes of blurr did.
+		MapBlurrer blurrer = new MapBlurrer(null);
 
-		//maps[0] = this.equatorMap.getCopy();
-		maps[0] = getRiverMap().getCopy();
-		maps[1] = this.approxWaterDist.getCopy();
-
-		/*cloud.scaleBy(1.1f);
-		maps[0].scaleBy(0.65f);
-		maps[1].scaleBy(0.75f);
-		maps[2].scaleBy(0.2f);*/
+		//maps[0] = this.equatorMap;
+		maps[0] = getRiverMap();
+		maps[1] = this.approxWaterDist;
 
-		precip = cloud.combineWith(maps);
-		precip.sqrt();
-		precip.blurr(5);
+		precip = MapExpression.sumOfSquares(this.cloudFreqMap, maps).sqrt().evaluate();
+		blurrer.setRadius(3);
+		blurrer.blurr(precip);
 
 		precipLandSizes = getMinMaxLandVals(precip);
 		normalizeByLandPrecips(precipLandSizes, precip);
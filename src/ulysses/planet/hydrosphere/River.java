@@ -2,40 +2,98 @@
 
 /*
 	Stores all information about a particular River. In this case,
-	it is simply a list of points.
+	it is simply a list of points, in order from upstream to downstream.
+
+	Rather than keep a java.awt.Point for each point, we pack each point
+	into one int, y * width + x, which we call its index. The indices are
+	kept in order in one array, and a hash map from each index to its
+	position in the river lets us check if a point is in the river, or find
+	where it is, without looking through the whole list. So adding a point,
+	checking for a point, and finding a point all take O(1) time.
+
+	Once a river is done, trimToSize shrinks the array to fit. The hash map
+	keeps its keys and positions in two int arrays at most half full, so with
+	the array, a river costs a few dozen bytes a point, not a Point object and
+	a reference for each.
+
+	Only adding or removing points changes what we keep. Checking for a point
+	never does, so many threads can read a finished river at once.
 */
 
 package ulysses.planet;
 
 // The actual data we store
 import java.awt.Point;
-// The data structure we use to represent a river.
-import java.util.ArrayList;
+// For growing our list of points.
+import java.util.Arrays;
+// For finding where a point is in the river.
+import ulysses.planet.utilities.IntIntHashMap;
 
 public class River {
-	// Stores the points in our river.
-	private ArrayList<Point> points;
+	// The width of the world. We need this to pack points.
+	private int width;
+	// The index of each point in our river, from upstream to downstream.
+	private int[] indices;
+	// The number of points in our river.
+	private int numPoints;
+	// The position of each index in indices.
+	private IntIntHashMap positions;
 
-	public River() {
-		this.points = new ArrayList<>();
+	/*
+		ARGUMENTS:
+			width - the width of the world the river is in.
+	*/
+	public River(int width) {
+		this.width = width > 0 ? width : 256;
+		this.indices = new int[16];
+		this.numPoints = 0;
+		this.positions = new IntIntHashMap();
+	}
+
+	public int getWidth() {
+		return this.width;
 	}
 
 	/*
-		Inserts a point into the river.
+		Inserts a point at the downstream end of the river.
 
 		ARGUMENTS:
 			toAdd - the point to add.
 
 		RETURNS:
 			true - The point was added to the river.
-			false - toAdd was null, or it was already apart
-			of the river.
+			false - toAdd was null, not in the world, or it was
+			already apart of the river.
 	*/
 	public boolean insertPoint(Point toAdd) {
-		if(toAdd == null || containsPoint(toAdd))
+		if(toAdd == null)
 			return false;
 
-		return this.points.add(toAdd);
+		return insertIndex(toIndex((int)toAdd.getX(), (int)toAdd.getY()));
+	}
+
+	/*
+		Inserts the point with the given index, y * width + x, at the downstream
+		end of the river.
+
+		RETURNS:
+			true if the point was added, or false if index is negative or the point
+			is already apart of the river.
+	*/
+	public boolean insertIndex(int index) {
+		if(index < 0)
+			return false;
+
+		if(this.positions.containsKey(index))
+			return false;
+
+		if(this.numPoints == this.indices.length)
+			this.indices = Arrays.copyOf(this.indices, Math.max(16, this.indices.length * 2));
+
+		this.positions.put(index, this.numPoints);
+		this.indices[this.numPoints++] = index;
+
+		return true;
 	}
 
 	/*
@@ -52,7 +110,17 @@ public class River {
 		if(toRem == null)
 			return false;
 
-		return this.points.remove(toRem);
+		int position = indexOf(toIndex((int)toRem.getX(), (int)toRem.getY()));
+		if(position == -1)
+			return false;
+
+		System.arraycopy(this.indices, position + 1, this.indices, position, this.numPoints - position - 1);
+		this.numPoints -= 1;
+
+		// Every point after the removed one moved, so find the positions again.
+		this.positions = buildPositions();
+
+		return true;
 	}
 
 	/*
@@ -70,13 +138,110 @@ public class River {
 		if(toFind == null)
 			return false;
 
-		return this.points.contains(toFind);
+		return containsIndex(toIndex((int)toFind.getX(), (int)toFind.getY()));
+	}
+
+	/*
+		Returns true if the point with the given index, y * width + x, is apart of
+		this river.
+	*/
+	public boolean containsIndex(int index) {
+		return this.positions.containsKey(index);
+	}
+
+	/*
+		Returns the position in the river of the point with the given index, or -1
+		if the point is not apart of the river.
+	*/
+	public int indexOf(int index) {
+		return this.positions.get(index, -1);
+	}
+
+	/*
+		Returns the number of points in the river.
+	*/
+	public int getNumPoints() {
+		return this.numPoints;
+	}
+
+	/*
+		Returns the point at a given position in the river. This makes a new
+		Point each time, so prefer getIndex when going through many points.
+
+		ARGUMENTS:
+			index - the position of the point in the river.
+
+		RETURNS:
+			the point at index, or null if index is invalid.
+	*/
+	public Point getPoint(int index) {
+		if(index < 0 || index >= this.numPoints)
+			return null;
+
+		return new Point(this.indices[index] % this.width, this.indices[index] / this.width);
+	}
+
+	/*
+		Returns the index, y * width + x, of the point at a given position in the
+		river, or -1 if position is invalid. Position 0 is the most upstream point.
+	*/
+	public int getIndex(int position) {
+		if(position < 0 || position >= this.numPoints)
+			return -1;
+
+		return this.indices[position];
+	}
+
+	/*
+		Returns the x or y coordinate of the point at a given position in the
+		river, or -1 if position is invalid.
+	*/
+	public int getX(int position) {
+		int index = getIndex(position);
+		return index == -1 ? -1 : index % this.width;
+	}
+
+	public int getY(int position) {
+		int index = getIndex(position);
+		return index == -1 ? -1 : index / this.width;
 	}
 
 	/*
 		Returns if the river has points or not.
 	*/
 	public boolean isEmpty() {
-		return this.points.isEmpty();
+		return this.numPoints == 0;
+	}
+
+	/*
+		Shrinks our list of points to fit. Call this once the river is done.
+		Adding points afterwards still works.
+	*/
+	public void trimToSize() {
+		if(this.indices.length != this.numPoints)
+			this.indices = Arrays.copyOf(this.indices, this.numPoints);
+	}
+
+	/*
+		Returns a new map from each index to its position. We fill it before
+		anyone else can see it.
+	*/
+	private IntIntHashMap buildPositions() {
+		IntIntHashMap result = new IntIntHashMap();
+
+		for(int i = 0; i < this.numPoints; ++i)
+			result.put(this.indices[i], i);
+
+		return result;
+	}
+
+	/*
+		Packs (x, y) into an index, or returns -1 if it is not in the world.
+	*/
+	private int toIndex(int x, int y) {
+		if(x < 0 || x >= this.width || y < 0)
+			return -1;
+
+		return y * this.width + x;
 	}
 }
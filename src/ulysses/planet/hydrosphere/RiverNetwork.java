@@ -0,0 +1,549 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Describes how the rivers of a hydrosphere join together. A river that
+	runs into another one is a tributary of it, but the rivers themselves
+	only tell us which points they pass through. The network splits every
+	river into segments: runs of points with no other river joining them.
+	A segment ends where it reaches the sea, or where it runs into a point
+	that another segment also runs into. We call that point a confluence,
+	and a new segment starts there.
+
+	For each segment, we keep the segment it flows into, the segments that
+	flow into it, how much water it carries, its Strahler order, and which
+	basin it is apart of. A basin is everything that drains out of the same
+	mouth. Everything is kept in flat arrays, indexed by segment, and a hash
+	map gives the segment of each river point, so asking about a point of a
+	river takes O(1) time. We only keep anything for river points, so a
+	network costs little next to the maps of the world.
+
+	How much water a segment carries is its flow. If we are given a flow map,
+	like the one the DrainageRiverBuilder makes, the flow of a segment is the
+	largest flow of its points, or of any segment that flows into it, since
+	the sea has no flow of its own. Otherwise, the flow of a segment is the number
+	of river points that drain through it: its own, plus the flow of every
+	segment that flows into it.
+
+	The Strahler order of a segment that nothing flows into is 1. Otherwise,
+	it is the largest order of the segments that flow into it, plus 1 if two
+	or more of them have that order.
+
+	A point flows to the next point of the river that owns it, which is the
+	river with the smallest index that has it. So water either goes further
+	down the same river, or into a river with a smaller index, and can never
+	flow in a loop.
+
+	A network is built once, from finished rivers. Changing the rivers of the
+	hydrosphere does not change the network.
+*/
+
+package ulysses.planet;
+
+// Used to get the flow of each point.
+import ulysses.planet.utilities.PlanetMap;
+// Used to count how many river points flow into each point, and to find
+// the segment of each point.
+import ulysses.planet.utilities.IntIntHashMap;
+// For growing our segment arrays.
+import java.util.Arrays;
+
+public class RiverNetwork {
+	// The dimensions of the world.
+	private int width, height;
+
+	// The number of segments.
+	private int numSegments;
+	// The river each segment is apart of.
+	private int[] segmentRivers;
+	// The index, y * width + x, of the first and last point of each segment.
+	private int[] segmentStarts;
+	private int[] segmentEnds;
+	// The number of points in each segment.
+	private int[] segmentLengths;
+	// The segment each segment flows into, or -1 if it flows into the sea.
+	private int[] downstream;
+	// The segments that flow into segment s are upstream[upstreamStarts[s]]
+	// up to, but not including, upstream[upstreamStarts[s + 1]].
+	private int[] upstreamStarts;
+	private int[] upstream;
+	// How much water each segment carries.
+	private float[] flows;
+	// The Strahler order of each segment.
+	private int[] orders;
+	// The basin each segment is apart of.
+	private int[] basins;
+
+	// The segment that the water of each basin leaves through.
+	private int[] basinMouths;
+	// The segments that start at a confluence.
+	private int[] confluences;
+
+	// The segment that owns each river point.
+	private IntIntHashMap pointSegments;
+
+	/*
+		Builds the network of the rivers of hydro.
+
+		ARGUMENTS:
+			hydro - the hydrosphere whose rivers we use. Every river should
+			be finished.
+			flowMap - the flow of each point, or null to use the number of
+			points that drain through each segment.
+	*/
+	RiverNetwork(Hydrosphere hydro, PlanetMap flowMap) {
+		this.width = hydro.getWidth();
+		this.height = hydro.getHeight();
+
+		this.numSegments = 0;
+		this.segmentRivers = new int[16];
+		this.segmentStarts = new int[16];
+		this.segmentEnds = new int[16];
+		this.segmentLengths = new int[16];
+		this.flows = new float[16];
+		// Until every segment is built, this holds the point each segment flows to.
+		this.downstream = new int[16];
+
+		this.pointSegments = new IntIntHashMap();
+
+		if(flowMap != null && (flowMap.getWidth() != this.width || flowMap.getHeight() != this.height))
+			flowMap = null;
+
+		buildSegments(hydro, countUpstreamPoints(hydro), flowMap);
+		linkSegments();
+		computeFlowsAndOrders(flowMap == null);
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public int getNumSegments() {
+		return this.numSegments;
+	}
+
+	/*
+		Returns the river that the given segment is apart of, or -1 if segment
+		is invalid.
+	*/
+	public int getSegmentRiver(int segment) {
+		return isSegment(segment) ? this.segmentRivers[segment] : -1;
+	}
+
+	/*
+		Returns the index, y * width + x, of the most upstream point of the given
+		segment, or -1 if segment is invalid.
+	*/
+	public int getSegmentStart(int segment) {
+		return isSegment(segment) ? this.segmentStarts[segment] : -1;
+	}
+
+	/*
+		Returns the index, y * width + x, of the most downstream point of the given
+		segment, or -1 if segment is invalid.
+	*/
+	public int getSegmentEnd(int segment) {
+		return isSegment(segment) ? this.segmentEnds[segment] : -1;
+	}
+
+	/*
+		Returns the number of points in the given segment, or 0 if segment is
+		invalid.
+	*/
+	public int getSegmentLength(int segment) {
+		return isSegment(segment) ? this.segmentLengths[segment] : 0;
+	}
+
+	/*
+		Returns the segment that the given segment flows into, or -1 if it flows
+		into the sea or segment is invalid.
+	*/
+	public int getDownstream(int segment) {
+		return isSegment(segment) ? this.downstream[segment] : -1;
+	}
+
+	/*
+		Returns the number of segments that flow into the given segment, or 0 if
+		segment is invalid.
+	*/
+	public int getNumUpstream(int segment) {
+		if(!isSegment(segment))
+			return 0;
+
+		return this.upstreamStarts[segment + 1] - this.upstreamStarts[segment];
+	}
+
+	/*
+		Returns one of the segments that flow into a segment.
+
+		ARGUMENTS:
+			segment - the segment we want a tributary of.
+			index - which tributary we want, from 0 to getNumUpstream(segment) - 1.
+
+		RETURNS:
+			the tributary, or -1 if segment or index is invalid.
+	*/
+	public int getUpstream(int segment, int index) {
+		if(index < 0 || index >= getNumUpstream(segment))
+			return -1;
+
+		return this.upstream[this.upstreamStarts[segment] + index];
+	}
+
+	/*
+		Returns how much water the given segment carries, or 0 if segment is
+		invalid.
+	*/
+	public float getFlow(int segment) {
+		return isSegment(segment) ? this.flows[segment] : 0.0f;
+	}
+
+	/*
+		Returns the Strahler order of the given segment, or 0 if segment is invalid.
+	*/
+	public int getOrder(int segment) {
+		return isSegment(segment) ? this.orders[segment] : 0;
+	}
+
+	/*
+		Returns the basin the given segment is apart of, or -1 if segment is invalid.
+	*/
+	public int getBasin(int segment) {
+		return isSegment(segment) ? this.basins[segment] : -1;
+	}
+
+	public int getNumBasins() {
+		return this.basinMouths.length;
+	}
+
+	/*
+		Returns the segment that the water of the given basin leaves through, or
+		-1 if basin is invalid. Its flow is the flow of the whole basin.
+	*/
+	public int getBasinMouth(int basin) {
+		if(basin < 0 || basin >= this.basinMouths.length)
+			return -1;
+
+		return this.basinMouths[basin];
+	}
+
+	public int getNumConfluences() {
+		return this.confluences.length;
+	}
+
+	/*
+		Returns the index, y * width + x, of a confluence, or -1 if confluence is
+		invalid.
+	*/
+	public int getConfluence(int confluence) {
+		if(confluence < 0 || confluence >= this.confluences.length)
+			return -1;
+
+		return this.segmentStarts[this.confluences[confluence]];
+	}
+
+	/*
+		Returns the segment that starts at a confluence, or -1 if confluence is
+		invalid. The segments that meet there are its upstream segments.
+	*/
+	public int getConfluenceSegment(int confluence) {
+		if(confluence < 0 || confluence >= this.confluences.length)
+			return -1;
+
+		return this.confluences[confluence];
+	}
+
+	/*
+		Returns the segment that owns the point at index, where index is computed
+		with y * width + x.
+
+		RETURNS:
+			the segment, or -1 if no river has the point or index is invalid.
+	*/
+	public int getSegmentOf(int index) {
+		return this.pointSegments.get(index, -1);
+	}
+
+	/*
+		Returns the segment that owns the point (x, y), or -1 if no river has
+		the point or (x, y) is out of bounds.
+	*/
+	public int getSegmentOf(int x, int y) {
+		if(x < 0 || x >= this.width || y < 0 || y >= this.height)
+			return -1;
+
+		return this.pointSegments.get(y * this.width + x, -1);
+	}
+
+	/*
+		Returns the basin of the point at index, or -1 if no river has the point.
+	*/
+	public int getBasinOf(int index) {
+		return getBasin(getSegmentOf(index));
+	}
+
+	/*
+		Returns how much water the river at index carries, or 0 if no river has
+		the point.
+	*/
+	public float getFlowAt(int index) {
+		return getFlow(getSegmentOf(index));
+	}
+
+	/*
+		Returns the Strahler order of the river at index, or 0 if no river has
+		the point.
+	*/
+	public int getOrderAt(int index) {
+		return getOrder(getSegmentOf(index));
+	}
+
+	private boolean isSegment(int segment) {
+		return segment >= 0 && segment < this.numSegments;
+	}
+
+	/*
+		Counts, for every river point, how many river points flow into it. A point
+		flows to the next point of the river that owns it, so a point shared by
+		rivers only flows one way.
+
+		RETURNS:
+			a map from each river point that something flows into, to the number
+			of points that do.
+	*/
+	private IntIntHashMap countUpstreamPoints(Hydrosphere hydro) {
+		IntIntHashMap result = new IntIntHashMap();
+		River river;
+		int next;
+
+		for(int r = 0; r < hydro.getNumRivers(); ++r) {
+			river = hydro.getRiver(r);
+			if(river == null)
+				continue;
+
+			for(int i = 0; i < river.getNumPoints() - 1; ++i) {
+				if(hydro.getRiverOf(river.getIndex(i)) != r)
+					continue;
+
+				next = river.getIndex(i + 1);
+				result.put(next, result.get(next, 0) + 1);
+			}
+		}
+
+		return result;
+	}
+
+	/*
+		Splits every river into segments. We walk each river downstream, over the
+		points it owns. A segment goes on while exactly one point, the one before
+		it in the same river, flows into the next point. Otherwise, the next point
+		starts a new segment.
+
+		ARGUMENTS:
+			hydro - the hydrosphere whose rivers we split.
+			numUpstream - how many points flow into each point.
+			flowMap - if not null, we set the flow of each segment to the
+			largest flow of its points.
+	*/
+	private void buildSegments(Hydrosphere hydro, IntIntHashMap numUpstream, PlanetMap flowMap) {
+		River river;
+		int point, next;
+		// The segment we are adding points to, or -1 if we need a new one.
+		int curr;
+
+		for(int r = 0; r < hydro.getNumRivers(); ++r) {
+			river = hydro.getRiver(r);
+			if(river == null)
+				continue;
+
+			curr = -1;
+
+			for(int i = 0; i < river.getNumPoints(); ++i) {
+				point = river.getIndex(i);
+
+				if(hydro.getRiverOf(point) != r) {
+					curr = -1;
+					continue;
+				}
+
+				if(curr == -1)
+					curr = addSegment(r, point);
+
+				this.pointSegments.put(point, curr);
+				this.segmentEnds[curr] = point;
+				this.segmentLengths[curr] += 1;
+
+				if(flowMap != null)
+					this.flows[curr] = Math.max(this.flows[curr], flowMap.getData(point));
+
+				next = i + 1 < river.getNumPoints() ? river.getIndex(i + 1) : -1;
+
+				if(next == -1 || hydro.getRiverOf(next) != r || numUpstream.get(next, 0) != 1) {
+					this.downstream[curr] = next;
+					curr = -1;
+				}
+			}
+		}
+	}
+
+	/*
+		Adds an empty segment of the given river that starts at point.
+
+		RETURNS:
+			the new segment.
+	*/
+	private int addSegment(int river, int point) {
+		if(this.numSegments == this.segmentRivers.length) {
+			int len = this.segmentRivers.length * 2;
+
+			this.segmentRivers = Arrays.copyOf(this.segmentRivers, len);
+			this.segmentStarts = Arrays.copyOf(this.segmentStarts, len);
+			this.segmentEnds = Arrays.copyOf(this.segmentEnds, len);
+			this.segmentLengths = Arrays.copyOf(this.segmentLengths, len);
+			this.flows = Arrays.copyOf(this.flows, len);
+			this.downstream = Arrays.copyOf(this.downstream, len);
+		}
+
+		this.segmentRivers[this.numSegments] = river;
+		this.segmentStarts[this.numSegments] = point;
+		this.segmentEnds[this.numSegments] = point;
+		this.segmentLengths[this.numSegments] = 0;
+		this.flows[this.numSegments] = 0.0f;
+		this.downstream[this.numSegments] = -1;
+
+		return this.numSegments++;
+	}
+
+	/*
+		Turns the point each segment flows to into the segment that owns it, and
+		builds the upstream lists and confluences.
+	*/
+	private void linkSegments() {
+		int numConfluences = 0;
+		int down;
+
+		this.segmentRivers = Arrays.copyOf(this.segmentRivers, this.numSegments);
+		this.segmentStarts = Arrays.copyOf(this.segmentStarts, this.numSegments);
+		this.segmentEnds = Arrays.copyOf(this.segmentEnds, this.numSegments);
+		this.segmentLengths = Arrays.copyOf(this.segmentLengths, this.numSegments);
+		this.flows = Arrays.copyOf(this.flows, this.numSegments);
+		this.downstream = Arrays.copyOf(this.downstream, this.numSegments);
+
+		this.upstreamStarts = new int[this.numSegments + 1];
+
+		// Count the tributaries of each segment, shifted up by one.
+		for(int s = 0; s < this.numSegments; ++s) {
+			down = this.downstream[s] == -1 ? -1 : this.pointSegments.get(this.downstream[s], -1);
+
+			this.downstream[s] = down;
+			if(down != -1)
+				this.upstreamStarts[down + 1] += 1;
+		}
+
+		for(int s = 0; s < this.numSegments; ++s) {
+			if(this.upstreamStarts[s + 1] >= 2)
+				numConfluences += 1;
+
+			this.upstreamStarts[s + 1] += this.upstreamStarts[s];
+		}
+
+		// Fill in the tributaries, using next as where the next one of each goes.
+		int[] next = Arrays.copyOf(this.upstreamStarts, this.numSegments);
+		this.upstream = new int[this.upstreamStarts[this.numSegments]];
+
+		for(int s = 0; s < this.numSegments; ++s) {
+			down = this.downstream[s];
+			if(down != -1)
+				this.upstream[next[down]++] = s;
+		}
+
+		this.confluences = new int[numConfluences];
+		numConfluences = 0;
+
+		for(int s = 0; s < this.numSegments; ++s) {
+			if(getNumUpstream(s) >= 2)
+				this.confluences[numConfluences++] = s;
+		}
+	}
+
+	/*
+		Computes the flow and order of every segment, from the sources down, and
+		then the basin of every segment, from the mouths up. A segment is only
+		visited once everything that flows into it has been. Since water never
+		flows in a loop, we visit every segment.
+
+		ARGUMENTS:
+			countPoints - if true, the flow of each segment is the number of
+			points that drain through it. Otherwise, each segment keeps the
+			largest flow of its points and the segments that flow into it.
+	*/
+	private void computeFlowsAndOrders(boolean countPoints) {
+		// Segments in the order we visit them.
+		int[] order = new int[this.numSegments];
+		int numOrdered = 0;
+		// The number of tributaries of each segment we have not visited yet.
+		int[] numLeft = new int[this.numSegments];
+		// The number of tributaries with the highest order so far.
+		int[] numHighest = new int[this.numSegments];
+		int numBasins = 0;
+		int s, down;
+
+		this.orders = new int[this.numSegments];
+		this.basins = new int[this.numSegments];
+
+		for(s = 0; s < this.numSegments; ++s) {
+			numLeft[s] = getNumUpstream(s);
+			if(numLeft[s] == 0)
+				order[numOrdered++] = s;
+		}
+
+		for(int i = 0; i < numOrdered; ++i) {
+			s = order[i];
+
+			if(numHighest[s] == 0)
+				this.orders[s] = 1;
+			else if(numHighest[s] >= 2)
+				this.orders[s] += 1;
+
+			if(countPoints)
+				this.flows[s] += this.segmentLengths[s];
+
+			down = this.downstream[s];
+			if(down == -1)
+				continue;
+
+			if(this.orders[s] > this.orders[down]) {
+				this.orders[down] = this.orders[s];
+				numHighest[down] = 1;
+			}
+
+			else if(this.orders[s] == this.orders[down])
+				numHighest[down] += 1;
+
+			if(countPoints)
+				this.flows[down] += this.flows[s];
+			else
+				this.flows[down] = Math.max(this.flows[down], this.flows[s]);
+
+			numLeft[down] -= 1;
+			if(numLeft[down] == 0)
+				order[numOrdered++] = down;
+		}
+
+		for(int i = numOrdered - 1; i >= 0; --i) {
+			s = order[i];
+			down = this.downstream[s];
+
+			this.basins[s] = down == -1 ? numBasins++ : this.basins[down];
+		}
+
+		this.basinMouths = new int[numBasins];
+		for(s = 0; s < this.numSegments; ++s) {
+			if(this.downstream[s] == -1)
+				this.basinMouths[this.basins[s]] = s;
+		}
+	}
+}
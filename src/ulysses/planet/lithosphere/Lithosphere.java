@@ -28,16 +28,26 @@
 
 	We combine each of these maps to create a final height
 	map.
+
+	Making the height map starts by combining the three maps into one,
+	which only depends on the maps. So we keep that combined map, along
+	with its values in sorted order, and reuse them every time we make a
+	height map until one of the three maps changes. Changing percentLand
+	or percentMountains then only redoes the clamping.
+
+	If the tectonics map was made from plates, we also keep the Plates:
+	which plate owns each point, which plates touch, and the border of
+	each plate.
 */
 
 package ulysses.planet;
 
 // For storing our planet maps.
 import ulysses.planet.utilities.PlanetMap;
-// For sorting our normalized crust values
-import java.awt.geom.Point2D;
-// For choosing heights in generating the heightmap.
-import java.util.Random;
+// For combining our planet maps into the height map.
+import ulysses.planet.utilities.MapExpression;
+// For sorting the combined map.
+import java.util.Arrays;
 
 public class Lithosphere
 {
@@ -60,6 +70,14 @@ public class Lithosphere
 	private PlanetMap thicknessMap;
 	// Primarily for adding extra details to the overall lithosphere.
 	private PlanetMap orogenicMap;
+	// The plate of each point, which plates touch, and the border of each
+	// plate. Null if the tectonics map did not come from plates.
+	private Plates plates;
+
+	// The normalized magnitude of the three maps, and its values in sorted
+	// order. Null until we make a height map, and whenever a map changes.
+	private PlanetMap magnitudeMap;
+	private float[] sortedMagnitudes;
 
 	public Lithosphere(int width, int height)
 	{
@@ -69,6 +87,10 @@ public class Lithosphere
 		this.tectonicsMap = null;
 		this.thicknessMap = null;
 		this.orogenicMap = null;
+		this.plates = null;
+
+		this.magnitudeMap = null;
+		this.sortedMagnitudes = null;
 
 		this.percentLand = 0.3f;
 		this.percentMountains = 0.058f;
@@ -79,7 +101,7 @@ public class Lithosphere
 		return this.width;
 	}
 
-	public void setWidth(int val)
+	public synchronized void setWidth(int val)
 	{
 		// Use some default value if the
 		// input is bad.
@@ -87,6 +109,7 @@ public class Lithosphere
 			val = 256;
 
 		this.width = val;
+		clearMagnitude();
 	}
 
 	public int getHeight()
@@ -94,7 +117,7 @@ public class Lithosphere
 		return this.height;
 	}
 
-	public void setHeight(int val)
+	public synchronized void setHeight(int val)
 	{
 		// Use some default value if the
 		// input is bad.
@@ -102,6 +125,7 @@ public class Lithosphere
 			val = 128;
 
 		this.height = val;
+		clearMagnitude();
 	}
 
 	public float getPercentLand()
@@ -135,9 +159,10 @@ public class Lithosphere
 		return this.tectonicsMap;
 	}
 
-	public void setTectonicsMap(PlanetMap val)
+	public synchronized void setTectonicsMap(PlanetMap val)
 	{
 		this.tectonicsMap = val;
+		clearMagnitude();
 	}
 
 	public PlanetMap getThicknessMap()
@@ -145,9 +170,10 @@ public class Lithosphere
 		return this.thicknessMap;
 	}
 
-	public void setThicknessMap(PlanetMap val)
+	public synchronized void setThicknessMap(PlanetMap val)
 	{
 		this.thicknessMap = val;
+		clearMagnitude();
 	}
 
 	public PlanetMap getOrogenicMap()
@@ -155,9 +181,20 @@ public class Lithosphere
 		return this.orogenicMap;
 	}
 
-	public void setOrogenicMap(PlanetMap val)
+	public synchronized void setOrogenicMap(PlanetMap val)
 	{
 		this.orogenicMap = val;
+		clearMagnitude();
+	}
+
+	public Plates getPlates()
+	{
+		return this.plates;
+	}
+
+	public void setPlates(Plates val)
+	{
+		this.plates = val;
 	}
 
 	/*
@@ -169,89 +206,224 @@ public class Lithosphere
 		the orogenics value at (x, y). The height at (x, y) thus is the magnitude
 		of (t, h, o).
 
-		Next, we normalize every data point. Then, we sort every point based on its height
-		from lowest to heighest. The first set of these points is set to submerged oceanic heights.
+		Next, we normalize every data point. Then, we rank every point based on its height
+		from lowest to heighest. The lowest set of these points is set to submerged oceanic heights.
 		The next set are non-mountainous land. The final set are mountainous land.
 
+		The normalized magnitude only depends on the three maps, so we only compute it
+		the first time, and copy it after that.
+
 		ARGUMENTS:
 			minMtn - the minimum value (between 0 and 1) that constitutes mountainous land.
 			minLnd - the minimum value (between 0 and 1) that constitutes land.
 	*/
 	public PlanetMap getHeightMap(float minMtn, float minLnd)
 	{
-		if(this.tectonicsMap == null || this.thicknessMap == null || this.orogenicMap == null)
+		return getHeightMap(minMtn, minLnd, this.percentLand, this.percentMountains);
+	}
+
+	/*
+		Same as getHeightMap above, but uses the given percentages of land and
+		mountains instead of ours. Bad percentages are replaced with ours.
+	*/
+	public synchronized PlanetMap getHeightMap(float minMtn, float minLnd, float percentLand, float percentMountains)
+	{
+		if(!computeMagnitude())
 			return null;
 
 		// What we will return.
-		PlanetMap height;
-		// Used to normalize the data.
-		float min, max;
+		PlanetMap height = this.magnitudeMap.getCopy();
 		int len = this.width * this.height;
-		// Sort these to compute the mountain, land, and ocean values.
-		Point2D.Float[] temp;
 		int lndLimit, seaLimit;
 		// The maximum elevation that is still considered submerged.
 		// Think of this as the minimum depth of the sea.
 		float maxSea = minLnd - 0.001f;
 		// The percentage of the world that is sea
-		float percentSea = 1.0f - (this.percentMountains + this.percentLand);
+		float percentSea;
 
-		height = this.tectonicsMap.combineWith(new PlanetMap[] { this.thicknessMap, this.orogenicMap });
-		height.sqrt();
+		if(percentLand < 0.0f || percentLand > 1.0f)
+			percentLand = this.percentLand;
+		if(percentMountains < 0.0f || percentMountains > 1.0f)
+			percentMountains = this.percentMountains;
 
-		// Normalize the data.
-		height.normalize();
-
-		temp = height.getSortedPoints();
+		percentSea = 1.0f - (percentMountains + percentLand);
 
 		// If it is negative, make it 0.
 		maxSea = maxSea < 0.0f ? 0.0f : maxSea;
 
 		seaLimit = (int)(len * percentSea);
-		lndLimit = (int)(len * this.percentLand);
+		lndLimit = (int)(len * percentLand);
 
 		// Clamp all points based on what terrain they are supposed to be.
 		// This way, our heightmap has the correct percentages of everything.
-
-		clampHeight(height, temp, 0, seaLimit, 0.0f, maxSea);
-		// Classify the next number of points land.
-		clampHeight(height, temp, seaLimit, seaLimit + lndLimit, minLnd, minMtn - 0.001f);
-		// Classify the remaining points mountainous.
-		clampHeight(height, temp, seaLimit + lndLimit, len, minMtn, 1.0f);
+		clampHeight(height, seaLimit, seaLimit + lndLimit, maxSea, minLnd, minMtn);
 
 		return height;
 	}
 
 	/*
-		Iterates through a portion of the height map and clamps the values according
-		to a specified bound. The way we traverse the height map is through a list
-		of 2D points called temp. Temp sorts the height map from smallest to largest.
-		It is a set of 2D points because we can store the index of each point, as
-		well as its value. We use this method to simplify setting values in the
-		final height map.
+		Computes the normalized magnitude of our three maps and sorts its values, unless
+		we already have them.
+
+		RETURNS:
+			false if any of our maps are missing.
+	*/
+	private boolean computeMagnitude()
+	{
+		if(this.magnitudeMap != null)
+			return true;
+
+		if(this.tectonicsMap == null || this.thicknessMap == null || this.orogenicMap == null)
+			return false;
+
+		// The magnitude of the tectonics, thickness, and orogenics maps.
+		MapExpression magnitude;
+
+		// Compute the magnitude and normalize it in as few passes as we can.
+		magnitude = MapExpression.sumOfSquares(this.tectonicsMap,
+											   new PlanetMap[] { this.thicknessMap, this.orogenicMap });
+		if(magnitude == null)
+			return false;
+
+		this.magnitudeMap = magnitude.sqrt().evaluateNormalized();
+
+		this.sortedMagnitudes = new float[this.width * this.height];
+		for(int i = 0; i < this.sortedMagnitudes.length; ++i)
+			this.sortedMagnitudes[i] = this.magnitudeMap.getData(i);
+
+		Arrays.parallelSort(this.sortedMagnitudes);
+
+		return true;
+	}
+
+	/*
+		Throws out the magnitude and its sorted values, so the next height map computes
+		them again.
+	*/
+	private void clearMagnitude()
+	{
+		this.magnitudeMap = null;
+		this.sortedMagnitudes = null;
+	}
+
+	/*
+		Returns the number of magnitudes that are strictly smaller than val. Since they
+		are sorted, this is the first index whose value is not smaller than val.
+	*/
+	private int countBelow(float val)
+	{
+		int lo = 0;
+		int hi = this.sortedMagnitudes.length;
+		int mid;
+
+		while(lo < hi)
+		{
+			mid = (lo + hi) >>> 1;
+
+			if(this.sortedMagnitudes[mid] < val)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+
+		return lo;
+	}
+
+	/*
+		Clamps every point of the height map according to its rank. The points with the
+		seaLimit smallest values are clamped to the sea range. The points ranked between
+		seaLimit and lndLimit are clamped to the land range. The remaining points are
+		clamped to the mountain range.
+
+		Since we keep the magnitudes in sorted order, the value at each limit is just
+		a lookup, and we compare every point against it. Points equal to a limit
+		value are assigned to the lower range in index order until that range is
+		full. This way, each range gets exactly the number of points it should,
+		even when many points share a value.
 
 		ARGUMENTS:
 			height - stores the height values
-			temp - stores the height values sorted by height.
-			start - where we want to start clamping the temp array.
-			end - where we want to stop clamping. We do not clamp the value at end.
-			min - the lower bound to clamp by.
-			max - the upper bound to clamp by.
+			seaLimit - the number of points that are sea.
+			lndLimit - the number of points that are sea or land.
+			maxSea - the largest value a sea point may have.
+			minLnd - the smallest value a land point may have.
+			minMtn - the smallest value a mountain point may have.
 	*/
-	private void clampHeight(PlanetMap height, Point2D.Float[] temp, int start, int end, float min, float max)
+	private void clampHeight(PlanetMap height, int seaLimit, int lndLimit, float maxSea, float minLnd, float minMtn)
 	{
-		int currIndex;
+		int len = this.width * this.height;
+		// The values at each limit. Anything smaller belongs to the range below the limit.
+		float seaCut, lndCut;
+		// The number of points equal to each cut that still belong to the range below it.
+		int seaTies, lndTies;
 		float currVal;
 
-		for(int i = start; i < end; ++i)
+		seaLimit = seaLimit > len ? len : seaLimit;
+		lndLimit = lndLimit > len ? len : lndLimit;
+
+		if(seaLimit < len)
 		{
-			currIndex = (int)temp[i].getX();
-			currVal = (float)temp[i].getY();
+			seaCut = this.sortedMagnitudes[seaLimit];
+			seaTies = seaLimit - countBelow(seaCut);
+		}
 
-			currVal = currVal > max ? max : currVal;
-			currVal = currVal < min ? min : currVal;
+		else
+		{
+			seaCut = Float.POSITIVE_INFINITY;
+			seaTies = 0;
+		}
+
+		if(lndLimit < len)
+		{
+			lndCut = this.sortedMagnitudes[lndLimit];
+			lndTies = lndLimit - countBelow(lndCut);
 
-			height.setData(currIndex, currVal);
+			// The points equal to both cuts that go to the sea are not land.
+			if(lndCut == seaCut)
+				lndTies -= seaTies;
 		}
+
+		else
+		{
+			lndCut = Float.POSITIVE_INFINITY;
+			lndTies = 0;
+		}
+
+		for(int i = 0; i < len; ++i)
+		{
+			currVal = height.getData(i);
+
+			if(currVal < seaCut || (currVal == seaCut && seaTies > 0))
+			{
+				if(currVal == seaCut)
+					seaTies -= 1;
+
+				currVal = clamp(currVal, 0.0f, maxSea);
+			}
+
+			else if(currVal < lndCut || (currVal == lndCut && lndTies > 0))
+			{
+				if(currVal == lndCut)
+					lndTies -= 1;
+
+				currVal = clamp(currVal, minLnd, minMtn - 0.001f);
+			}
+
+			else
+				currVal = clamp(currVal, minMtn, 1.0f);
+
+			height.setData(i, currVal);
+		}
+	}
+
+	/*
+		Clamps val to be between min and max.
+	*/
+	private float clamp(float val, float min, float max)
+	{
+		val = val > max ? max : val;
+		val = val < min ? min : val;
+
+		return val;
 	}
 }
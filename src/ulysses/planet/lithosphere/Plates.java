@@ -0,0 +1,320 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Plates stores which tectonic plate owns each point of the world, along
+	with which plates touch each other and which points of each plate are on
+	its border. The tectonics generators make this while they make the
+	tectonics map, so anything that cares about plate borders, like mountain
+	ranges along collisions, does not have to find the plates again from the
+	tectonics map.
+
+	Both the neighbors and the border points are stored compactly: one
+	array holds the neighbors of plate 0, then the neighbors of plate 1,
+	and so on, and a second array holds where each plate's list starts.
+	So the neighbors of plate p are neighbors[neighborStart[p]] up to,
+	but not including, neighbors[neighborStart[p + 1]].
+
+	Two points are next to each other if one is directly left, right, above,
+	or below the other. Like the rest of the world, the map always wraps around
+	horizontally. Whether it wraps around vertically depends on the generator.
+*/
+
+package ulysses.planet;
+
+// For sorting and searching the neighbor lists.
+import java.util.Arrays;
+
+public class Plates
+{
+	// The dimensions of the world.
+	private int width, height;
+	// The number of plates.
+	private int numPlates;
+	// The plate of each point, stored as y * width + x.
+	private int[] plateIds;
+
+	// Where the neighbors of each plate start in neighbors. Has numPlates + 1 values.
+	private int[] neighborStart;
+	// The neighbors of every plate, in order of plate, then id.
+	private int[] neighbors;
+
+	// Where the border points of each plate start in borders. Has numPlates + 1 values.
+	private int[] borderStart;
+	// The border points of every plate, in order of plate, then index.
+	private int[] borders;
+
+	/*
+		Builds the plates from the plate of each point. We keep plateIds as is,
+		so do not modify it afterwards.
+
+		ARGUMENTS:
+			width, height - the dimensions of the world.
+			numPlates - the number of plates. Every value of plateIds must be
+			from 0 to numPlates - 1.
+			plateIds - the plate of each point, stored as y * width + x.
+			wrapVertically - if true, the top row is next to the bottom row.
+	*/
+	public Plates(int width, int height, int numPlates, int[] plateIds, boolean wrapVertically)
+	{
+		this.width = width > 0 ? width : 1;
+		this.height = height > 0 ? height : 1;
+		this.numPlates = numPlates > 0 ? numPlates : 0;
+
+		if(plateIds == null || plateIds.length != this.width * this.height)
+		{
+			plateIds = new int[this.width * this.height];
+			this.numPlates = this.numPlates > 0 ? this.numPlates : 1;
+		}
+
+		this.plateIds = plateIds;
+
+		build(wrapVertically);
+	}
+
+	public int getWidth()
+	{
+		return this.width;
+	}
+
+	public int getHeight()
+	{
+		return this.height;
+	}
+
+	public int getNumPlates()
+	{
+		return this.numPlates;
+	}
+
+	/*
+		Returns the plate of point (x, y), or -1 if the point is not on the map.
+	*/
+	public int getPlate(int x, int y)
+	{
+		if(x < 0 || x >= this.width || y < 0 || y >= this.height)
+			return -1;
+
+		return this.plateIds[y * this.width + x];
+	}
+
+	/*
+		Returns the plate of the point at index (y * width + x), or -1 if the point
+		is not on the map.
+	*/
+	public int getPlate(int index)
+	{
+		if(index < 0 || index >= this.plateIds.length)
+			return -1;
+
+		return this.plateIds[index];
+	}
+
+	/*
+		Returns a copy of the plate of every point, stored as y * width + x.
+	*/
+	public int[] getPlateIds()
+	{
+		return Arrays.copyOf(this.plateIds, this.plateIds.length);
+	}
+
+	/*
+		Returns the number of plates that touch plate, or 0 if there is no such plate.
+	*/
+	public int getNumNeighbors(int plate)
+	{
+		if(plate < 0 || plate >= this.numPlates)
+			return 0;
+
+		return this.neighborStart[plate + 1] - this.neighborStart[plate];
+	}
+
+	/*
+		Returns the i-th plate that touches plate. Neighbors are in order of id.
+
+		RETURNS:
+			the neighbor, or -1 if there is no such plate or neighbor.
+	*/
+	public int getNeighbor(int plate, int i)
+	{
+		if(i < 0 || i >= getNumNeighbors(plate))
+			return -1;
+
+		return this.neighbors[this.neighborStart[plate] + i];
+	}
+
+	/*
+		Returns true if plates a and b touch.
+	*/
+	public boolean areNeighbors(int a, int b)
+	{
+		if(a < 0 || a >= this.numPlates || b < 0 || b >= this.numPlates)
+			return false;
+
+		return Arrays.binarySearch(this.neighbors, this.neighborStart[a], this.neighborStart[a + 1], b) >= 0;
+	}
+
+	/*
+		Returns the number of points of plate that are next to another plate, or 0
+		if there is no such plate.
+	*/
+	public int getNumBorderPoints(int plate)
+	{
+		if(plate < 0 || plate >= this.numPlates)
+			return 0;
+
+		return this.borderStart[plate + 1] - this.borderStart[plate];
+	}
+
+	/*
+		Returns the i-th border point of plate, as y * width + x. Border points are
+		in order of index.
+
+		RETURNS:
+			the point, or -1 if there is no such plate or point.
+	*/
+	public int getBorderPoint(int plate, int i)
+	{
+		if(i < 0 || i >= getNumBorderPoints(plate))
+			return -1;
+
+		return this.borders[this.borderStart[plate] + i];
+	}
+
+	/*
+		Finds the neighbors and border points of every plate. We go through every
+		point once, comparing it to the point to its right and the point below it.
+		If they are on different plates, both are border points, and the two plates
+		touch. Each touching pair of plates is packed into a long as (lower << 32) | higher.
+		We then sort the pairs, throw out repeats, and count them into our lists.
+
+		ARGUMENTS:
+			wrapVertically - if true, the top row is next to the bottom row.
+	*/
+	private void build(boolean wrapVertically)
+	{
+		int len = this.plateIds.length;
+		// True for each point that is next to another plate.
+		boolean[] isBorder = new boolean[len];
+		// Every touching pair of plates we found, maybe with repeats.
+		long[] pairs = new long[64];
+		int numPairs = 0;
+		int numUnique;
+		long pair;
+		int plate, other, right, down;
+
+		for(int y = 0; y < this.height; ++y)
+		{
+			for(int x = 0; x < this.width; ++x)
+			{
+				int i = y * this.width + x;
+				plate = this.plateIds[i];
+
+				right = x == this.width - 1 ? i - x : i + 1;
+				down = y == this.height - 1 ? (wrapVertically ? x : -1) : i + this.width;
+
+				for(int k = 0; k < 2; ++k)
+				{
+					int j = k == 0 ? right : down;
+					if(j == -1 || this.plateIds[j] == plate)
+						continue;
+
+					other = this.plateIds[j];
+					isBorder[i] = true;
+					isBorder[j] = true;
+
+					pair = plate < other ? ((long)plate << 32) | other : ((long)other << 32) | plate;
+
+					// Neighboring points usually give the same pair, so skip those.
+					if(numPairs > 0 && pairs[numPairs - 1] == pair)
+						continue;
+
+					if(numPairs == pairs.length)
+						pairs = Arrays.copyOf(pairs, pairs.length * 2);
+
+					pairs[numPairs++] = pair;
+				}
+			}
+		}
+
+		Arrays.sort(pairs, 0, numPairs);
+
+		numUnique = 0;
+		for(int p = 0; p < numPairs; ++p)
+		{
+			if(numUnique == 0 || pairs[numUnique - 1] != pairs[p])
+				pairs[numUnique++] = pairs[p];
+		}
+
+		buildNeighbors(pairs, numUnique);
+		buildBorders(isBorder);
+	}
+
+	/*
+		Fills in neighborStart and neighbors from every touching pair of plates.
+		Each pair appears once, so we add it to the lists of both plates.
+	*/
+	private void buildNeighbors(long[] pairs, int numPairs)
+	{
+		// Where we add the next neighbor of each plate.
+		int[] next = new int[this.numPlates];
+		int a, b;
+
+		this.neighborStart = new int[this.numPlates + 1];
+		this.neighbors = new int[2 * numPairs];
+
+		for(int p = 0; p < numPairs; ++p)
+		{
+			this.neighborStart[(int)(pairs[p] >>> 32) + 1] += 1;
+			this.neighborStart[(int)pairs[p] + 1] += 1;
+		}
+
+		for(int i = 0; i < this.numPlates; ++i)
+		{
+			this.neighborStart[i + 1] += this.neighborStart[i];
+			next[i] = this.neighborStart[i];
+		}
+
+		// Pairs are sorted by lower id, then higher id. So plate a first gets every
+		// lower neighbor in order, then every higher neighbor in order, and each list
+		// ends up sorted.
+		for(int p = 0; p < numPairs; ++p)
+		{
+			a = (int)(pairs[p] >>> 32);
+			b = (int)pairs[p];
+
+			this.neighbors[next[a]++] = b;
+			this.neighbors[next[b]++] = a;
+		}
+	}
+
+	/*
+		Fills in borderStart and borders from the points that are next to another plate.
+	*/
+	private void buildBorders(boolean[] isBorder)
+	{
+		// Where we add the next border point of each plate.
+		int[] next = new int[this.numPlates];
+
+		this.borderStart = new int[this.numPlates + 1];
+
+		for(int i = 0; i < isBorder.length; ++i)
+		{
+			if(isBorder[i])
+				this.borderStart[this.plateIds[i] + 1] += 1;
+		}
+
+		for(int i = 0; i < this.numPlates; ++i)
+		{
+			this.borderStart[i + 1] += this.borderStart[i];
+			next[i] = this.borderStart[i];
+		}
+
+		this.borders = new int[this.borderStart[this.numPlates]];
+
+		for(int i = 0; i < isBorder.length; ++i)
+		{
+			if(isBorder[i])
+				this.borders[next[this.plateIds[i]]++] = i;
+		}
+	}
+}
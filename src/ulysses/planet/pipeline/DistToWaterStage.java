@@ -0,0 +1,43 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Computes how close each point is to water with a HydrosphereGenerator.
+*/
+
+package ulysses.planet.pipeline;
+
+import ulysses.planet.utilities.PlanetMap;
+import ulysses.planet.utilities.generators.HashRandom;
+import ulysses.planet.utilities.generators.HydrosphereGenerator;
+
+public class DistToWaterStage extends Stage {
+	// What we compute the distances with.
+	private HydrosphereGenerator generator;
+
+	/*
+		ARGUMENTS:
+			heightMap, riverMap - the names of the layers we read.
+			output - the name of the distance to water layer.
+			generator - what we compute the distances with.
+	*/
+	public DistToWaterStage(String heightMap, String riverMap, String output, HydrosphereGenerator generator) {
+		super("distance to water", new String[] { heightMap, riverMap }, new String[] { output });
+
+		this.generator = generator;
+	}
+
+	public long getParameterHash() {
+		if(this.generator == null)
+			return 0;
+
+		long result = HashRandom.combine(0, Float.floatToIntBits(this.generator.getSeaLevel()));
+		return HashRandom.combine(result, this.generator.getExactDistToWater() ? 1 : 0);
+	}
+
+	public Object[] run(Object[] inputs) {
+		if(this.generator == null)
+			return null;
+
+		return new Object[] { this.generator.generateDistToWater((PlanetMap)inputs[0], (PlanetMap)inputs[1]) };
+	}
+}
@@ -0,0 +1,62 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Makes the height map of a Lithosphere, with the percentages of land and
+	mountains of a LithosphereGenerator. The lithosphere keeps what it needs
+	to make another height map quickly, so when only the percentages change,
+	the lithosphere is reused and only this stage and those after it run.
+*/
+
+package ulysses.planet.pipeline;
+
+import ulysses.planet.Lithosphere;
+import ulysses.planet.utilities.generators.HashRandom;
+import ulysses.planet.utilities.generators.LithosphereGenerator;
+
+public class HeightMapStage extends Stage {
+	// Where we get the percentages of land and mountains from.
+	private LithosphereGenerator generator;
+	// The minimum height of mountains and land, as given to Lithosphere.getHeightMap.
+	private float minMtn, minLnd;
+
+	/*
+		ARGUMENTS:
+			lithosphere - the name of the lithosphere layer we read.
+			output - the name of the height map layer.
+			generator - where we get the percentages of land and mountains from.
+			If null, we use the lithosphere's own.
+			minMtn - the minimum height of mountains.
+			minLnd - the minimum height of land.
+	*/
+	public HeightMapStage(String lithosphere, String output, LithosphereGenerator generator,
+						  float minMtn, float minLnd) {
+		super("height map", new String[] { lithosphere }, new String[] { output });
+
+		this.generator = generator;
+		this.minMtn = minMtn;
+		this.minLnd = minLnd;
+	}
+
+	public long getParameterHash() {
+		long result = HashRandom.combine(0, Float.floatToIntBits(this.minMtn));
+		result = HashRandom.combine(result, Float.floatToIntBits(this.minLnd));
+
+		if(this.generator != null) {
+			result = HashRandom.combine(result, Float.floatToIntBits(this.generator.getPercentLand()));
+			result = HashRandom.combine(result, Float.floatToIntBits(this.generator.getPercentMountains()));
+		}
+
+		return result;
+	}
+
+	public Object[] run(Object[] inputs) {
+		Lithosphere lithosphere = (Lithosphere)inputs[0];
+
+		if(this.generator == null)
+			return new Object[] { lithosphere.getHeightMap(this.minMtn, this.minLnd) };
+
+		return new Object[] { lithosphere.getHeightMap(this.minMtn, this.minLnd,
+													   this.generator.getPercentLand(),
+													   this.generator.getPercentMountains()) };
+	}
+}
@@ -0,0 +1,43 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Puts the rivers and the other hydrosphere maps together into one
+	Hydrosphere, and makes its precipitation map. We set the maps on a copy
+	of the rivers' Hydrosphere, so the layer we read stays as is.
+*/
+
+package ulysses.planet.pipeline;
+
+import ulysses.planet.Hydrosphere;
+import ulysses.planet.utilities.PlanetMap;
+
+public class HydrosphereStage extends Stage {
+	/*
+		ARGUMENTS:
+			rivers, cloudFreqMap, equatorMap, distToWater - the names of the layers we read.
+			hydrosphere, precipitationMap - the names of the layers we make.
+	*/
+	public HydrosphereStage(String rivers, String cloudFreqMap, String equatorMap, String distToWater,
+							String hydrosphere, String precipitationMap) {
+		super("hydrosphere",
+			  new String[] { rivers, cloudFreqMap, equatorMap, distToWater },
+			  new String[] { hydrosphere, precipitationMap });
+	}
+
+	/*
+		We have no parameters besides our inputs.
+	*/
+	public long getParameterHash() {
+		return 0;
+	}
+
+	public Object[] run(Object[] inputs) {
+		Hydrosphere result = ((Hydrosphere)inputs[0]).getCopy();
+
+		result.setCloudFreqMap((PlanetMap)inputs[1]);
+		result.setEquatorMap((PlanetMap)inputs[2]);
+		result.setApproxDistToWaterMap((PlanetMap)inputs[3]);
+
+		return new Object[] { result, result.getPrecipitationMap() };
+	}
+}
@@ -0,0 +1,40 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Generates a Lithosphere with a LithosphereGenerator. This stage has no
+	inputs, so it only runs again when the generator's maps would change.
+	The percentages of land and mountains do not change the maps, so we do
+	not hash them; the HeightMapStage does. So the percentages of the
+	lithosphere we make may be out of date, and should not be relied on.
+*/
+
+package ulysses.planet.pipeline;
+
+import ulysses.planet.utilities.generators.LithosphereGenerator;
+
+public class LithosphereStage extends Stage {
+	// What we generate the lithosphere with.
+	private LithosphereGenerator generator;
+
+	/*
+		ARGUMENTS:
+			output - the name of the lithosphere layer.
+			generator - what we generate the lithosphere with.
+	*/
+	public LithosphereStage(String output, LithosphereGenerator generator) {
+		super("lithosphere", null, new String[] { output });
+
+		this.generator = generator;
+	}
+
+	public long getParameterHash() {
+		return this.generator == null ? 0 : this.generator.getMapParameterHash();
+	}
+
+	public Object[] run(Object[] inputs) {
+		if(this.generator == null)
+			return null;
+
+		return new Object[] { this.generator.generateLithosphere() };
+	}
+}
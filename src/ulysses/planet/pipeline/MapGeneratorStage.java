@@ -0,0 +1,77 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Generates a map with any MapGenerator, like the cloud frequency map or the
+	equator map. Our dimensions may change between runs, so we only give them
+	to the generator when we run, and hash the generator as it would be with
+	them. Two of these stages may share a generator, since we hold its lock
+	while we set its dimensions and generate.
+*/
+
+package ulysses.planet.pipeline;
+
+import ulysses.planet.utilities.generators.MapGenerator;
+
+public class MapGeneratorStage extends Stage {
+	// What we generate the map with.
+	private MapGenerator generator;
+	// The dimensions of the map.
+	private int width, height;
+
+	/*
+		ARGUMENTS:
+			name - what we call this stage.
+			output - the name of the map layer.
+			generator - what we generate the map with.
+			width, height - the dimensions of the map.
+	*/
+	public MapGeneratorStage(String name, String output, MapGenerator generator, int width, int height) {
+		super(name, null, new String[] { output });
+
+		this.generator = generator;
+
+		setWidth(width);
+		setHeight(height);
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public void setWidth(int val) {
+		if(val <= 0)
+			val = 256;
+
+		this.width = val;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public void setHeight(int val) {
+		if(val <= 0)
+			val = 256;
+
+		this.height = val;
+	}
+
+	public long getParameterHash() {
+		if(this.generator == null)
+			return 0;
+
+		return this.generator.getParameterHash(this.width, this.height, this.generator.getSeed());
+	}
+
+	public Object[] run(Object[] inputs) {
+		if(this.generator == null)
+			return null;
+
+		synchronized(this.generator) {
+			this.generator.setWidth(this.width);
+			this.generator.setHeight(this.height);
+
+			return new Object[] { this.generator.generateMap() };
+		}
+	}
+}
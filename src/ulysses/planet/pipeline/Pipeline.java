@@ -0,0 +1,304 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	A Pipeline runs a set of Stages in whatever order their layers allow.
+	A stage is ready once every layer it reads has been made. Every ready
+	stage is given to our executor at once, so stages that do not depend
+	on each other run at the same time. Whenever a stage finishes, its
+	outputs may make more stages ready.
+
+	We also remember the outputs of every stage. Each layer gets a key,
+	which is a hash of the parameters of the stage that made it and the
+	keys of that stage's inputs. So a layer's key changes whenever anything
+	it was made from changes. If a stage's key is the same as the last time
+	it ran, we reuse its old outputs rather than run it again.
+
+	All of the bookkeeping happens on the thread that called run. Stages
+	only ever run their own work on the executor.
+*/
+
+package ulysses.planet.pipeline;
+
+// For combining parameter hashes into keys.
+import ulysses.planet.utilities.generators.HashRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class Pipeline {
+	// Our stages, in the order they were added.
+	private ArrayList<Stage> stages;
+	// The stage that makes each layer.
+	private HashMap<String, Stage> producers;
+
+	// The layers made by the last run, and their keys.
+	private HashMap<String, Object> layers;
+	private HashMap<String, Long> layerKeys;
+
+	// The key and outputs of each stage the last time it ran.
+	private HashMap<Stage, Long> memoKeys;
+	private HashMap<Stage, Object[]> memoOutputs;
+
+	// What we run stages on. If null, we run them one at a time.
+	private ExecutorService executor;
+	// The number of stages the last run actually ran, rather than reused.
+	private int numStagesRun;
+
+	public Pipeline() {
+		this.stages = new ArrayList<>();
+		this.producers = new HashMap<>();
+
+		this.layers = new HashMap<>();
+		this.layerKeys = new HashMap<>();
+
+		this.memoKeys = new HashMap<>();
+		this.memoOutputs = new HashMap<>();
+
+		this.executor = null;
+		this.numStagesRun = 0;
+	}
+
+	public ExecutorService getExecutor() {
+		return this.executor;
+	}
+
+	/*
+		Sets what we run stages on. If val is null, we run them one at a time
+		on the thread that calls run.
+	*/
+	public void setExecutor(ExecutorService val) {
+		this.executor = val;
+	}
+
+	public int getNumStages() {
+		return this.stages.size();
+	}
+
+	public int getNumStagesRun() {
+		return this.numStagesRun;
+	}
+
+	/*
+		Adds a stage to the pipeline. This fails if stage is null, was already
+		added, or makes a layer that another stage already makes.
+
+		RETURNS:
+			true if we added the stage.
+	*/
+	public boolean addStage(Stage stage) {
+		if(stage == null || this.stages.contains(stage))
+			return false;
+
+		for(int i = 0; i < stage.getNumOutputs(); ++i) {
+			if(this.producers.containsKey(stage.getOutput(i)))
+				return false;
+		}
+
+		this.stages.add(stage);
+		for(int i = 0; i < stage.getNumOutputs(); ++i)
+			this.producers.put(stage.getOutput(i), stage);
+
+		return true;
+	}
+
+	/*
+		Returns the layer with the given name from the last run, or null if
+		there is no such layer.
+	*/
+	public Object getLayer(String name) {
+		return this.layers.get(name);
+	}
+
+	/*
+		Forgets the outputs of every stage, so the next run runs every stage.
+	*/
+	public void clearMemo() {
+		this.memoKeys.clear();
+		this.memoOutputs.clear();
+	}
+
+	/*
+		Makes every layer. This fails if a stage reads a layer no stage makes,
+		the stages depend on each other in a loop, or a stage fails. If a stage
+		fails, we cancel every stage still running.
+
+		RETURNS:
+			true if every layer was made.
+	*/
+	public boolean run() {
+		// The stages we are done with, and the stages running on the executor.
+		ArrayList<Stage> done = new ArrayList<>();
+		HashMap<Future<Object[]>, Stage> running = new HashMap<>();
+		// The key of each running stage, from when we started it.
+		HashMap<Stage, Long> runningKeys = new HashMap<>();
+		CompletionService<Object[]> completion = null;
+		Future<Object[]> finished;
+		Stage stage;
+		boolean progress;
+
+		this.layers.clear();
+		this.layerKeys.clear();
+		this.numStagesRun = 0;
+
+		for(Stage s : this.stages) {
+			for(int i = 0; i < s.getNumInputs(); ++i) {
+				if(!this.producers.containsKey(s.getInput(i)))
+					return false;
+			}
+		}
+
+		if(this.executor != null)
+			completion = new ExecutorCompletionService<>(this.executor);
+
+		while(true) {
+			// Start or reuse every stage that is ready. Reusing a stage
+			// or running it here may make more stages ready.
+			do {
+				progress = false;
+
+				for(Stage s : this.stages) {
+					if(done.contains(s) || running.containsValue(s) || !isReady(s))
+						continue;
+
+					final Stage ready = s;
+					final Object[] inputs = getInputs(s);
+					long key = getKey(s);
+
+					if(this.memoOutputs.containsKey(s) && this.memoKeys.get(s) == key) {
+						publish(s, key, this.memoOutputs.get(s));
+						done.add(s);
+						progress = true;
+					}
+
+					else if(completion == null) {
+						this.numStagesRun += 1;
+						if(!finish(s, key, s.run(inputs)))
+							return false;
+
+						done.add(s);
+						progress = true;
+					}
+
+					else {
+						this.numStagesRun += 1;
+						running.put(completion.submit(() -> ready.run(inputs)), s);
+						runningKeys.put(s, key);
+					}
+				}
+			} while(progress);
+
+			if(running.isEmpty())
+				break;
+
+			// Wait for any running stage to finish.
+			try {
+				finished = completion.take();
+				stage = running.remove(finished);
+
+				if(!finish(stage, runningKeys.remove(stage), finished.get())) {
+					cancel(running);
+					return false;
+				}
+
+				done.add(stage);
+			}
+
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancel(running);
+				return false;
+			}
+
+			catch(ExecutionException e) {
+				cancel(running);
+				return false;
+			}
+		}
+
+		// Any stage we never ran must be part of a loop.
+		return done.size() == this.stages.size();
+	}
+
+	/*
+		Returns true if every input of stage has been made.
+	*/
+	private boolean isReady(Stage stage) {
+		for(int i = 0; i < stage.getNumInputs(); ++i) {
+			if(!this.layerKeys.containsKey(stage.getInput(i)))
+				return false;
+		}
+
+		return true;
+	}
+
+	/*
+		Returns the value of every input of stage.
+	*/
+	private Object[] getInputs(Stage stage) {
+		Object[] result = new Object[stage.getNumInputs()];
+
+		for(int i = 0; i < result.length; ++i)
+			result[i] = this.layers.get(stage.getInput(i));
+
+		return result;
+	}
+
+	/*
+		Returns the key of stage: its parameter hash combined with the key of
+		every input.
+	*/
+	private long getKey(Stage stage) {
+		long result = stage.getParameterHash();
+
+		for(int i = 0; i < stage.getNumInputs(); ++i)
+			result = HashRandom.combine(result, this.layerKeys.get(stage.getInput(i)));
+
+		return result;
+	}
+
+	/*
+		Checks the outputs of a stage that ran, remembers them, and makes its layers.
+		We use the key the stage had when we started it, so that if its parameters
+		change while it runs, its outputs are not remembered under the new ones.
+
+		RETURNS:
+			false if the stage failed.
+	*/
+	private boolean finish(Stage stage, long key, Object[] outputs) {
+		if(outputs == null || outputs.length != stage.getNumOutputs())
+			return false;
+
+		for(int i = 0; i < outputs.length; ++i) {
+			if(outputs[i] == null)
+				return false;
+		}
+
+		this.memoKeys.put(stage, key);
+		this.memoOutputs.put(stage, outputs);
+		publish(stage, key, outputs);
+
+		return true;
+	}
+
+	/*
+		Makes the layers of stage. Output i gets the key of the stage combined with i.
+	*/
+	private void publish(Stage stage, long key, Object[] outputs) {
+		for(int i = 0; i < outputs.length; ++i) {
+			this.layers.put(stage.getOutput(i), outputs[i]);
+			this.layerKeys.put(stage.getOutput(i), HashRandom.combine(key, i));
+		}
+	}
+
+	/*
+		Cancels every stage that is still running.
+	*/
+	private void cancel(HashMap<Future<Object[]>, Stage> running) {
+		for(Future<Object[]> future : running.keySet())
+			future.cancel(true);
+	}
+}
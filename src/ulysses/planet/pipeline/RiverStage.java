@@ -0,0 +1,66 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Builds the rivers of a HydrosphereGenerator. Rivers erode the height map
+	as they go, so we erode a copy and keep the height map we read as is.
+
+	Our outputs are a Hydrosphere with just the rivers, height map, and sea
+	level set, the eroded height map, and the river map.
+*/
+
+package ulysses.planet.pipeline;
+
+import ulysses.planet.Hydrosphere;
+import ulysses.planet.utilities.PlanetMap;
+import ulysses.planet.utilities.generators.HashRandom;
+import ulysses.planet.utilities.generators.HydrosphereGenerator;
+
+public class RiverStage extends Stage {
+	// What we build the rivers with.
+	private HydrosphereGenerator generator;
+
+	/*
+		ARGUMENTS:
+			heightMap, cloudFreqMap, riverSourceModMap - the names of the layers we read.
+			rivers, erodedHeightMap, riverMap - the names of the layers we make.
+			generator - what we build the rivers with.
+	*/
+	public RiverStage(String heightMap, String cloudFreqMap, String riverSourceModMap,
+					  String rivers, String erodedHeightMap, String riverMap,
+					  HydrosphereGenerator generator) {
+		super("rivers",
+			  new String[] { heightMap, cloudFreqMap, riverSourceModMap },
+			  new String[] { rivers, erodedHeightMap, riverMap });
+
+		this.generator = generator;
+	}
+
+	public long getParameterHash() {
+		if(this.generator == null)
+			return 0;
+
+		long result = HashRandom.combine(0, this.generator.getWidth());
+		result = HashRandom.combine(result, this.generator.getHeight());
+		result = HashRandom.combine(result, this.generator.getNumRivers());
+		result = HashRandom.combine(result, Float.floatToIntBits(this.generator.getSeaLevel()));
+		result = HashRandom.combine(result, this.generator.getShuffleSeed());
+		result = HashRandom.combine(result, this.generator.getDrainageRivers() ? 1 : 0);
+		result = HashRandom.combine(result, this.generator.getParallelRivers() ? 1 : 0);
+		result = HashRandom.combine(result, Float.floatToIntBits(this.generator.getMinRiverFlow()));
+
+		return result;
+	}
+
+	public Object[] run(Object[] inputs) {
+		if(this.generator == null)
+			return null;
+
+		PlanetMap eroded = ((PlanetMap)inputs[0]).getCopy();
+		Hydrosphere result = this.generator.generateRivers(eroded, (PlanetMap)inputs[1], (PlanetMap)inputs[2]);
+
+		if(result == null)
+			return null;
+
+		return new Object[] { result, eroded, result.getRiverMap() };
+	}
+}
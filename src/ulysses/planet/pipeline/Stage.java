@@ -0,0 +1,83 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	A Stage is one step of making a world, like generating the lithosphere
+	or building the rivers. Each stage takes some named layers as inputs,
+	and makes some named layers as outputs. A layer can be anything: a
+	PlanetMap, a Lithosphere, a Hydrosphere, and so on.
+
+	A Pipeline uses the names to work out which stages depend on which, and
+	runs stages that do not depend on each other at the same time. So a
+	stage must only read its inputs, never change them, since other stages
+	may be reading them too.
+
+	Each stage also gives a hash of its parameters. If the parameters and the
+	inputs of a stage are the same as the last time it ran, the Pipeline
+	reuses its outputs instead of running it again.
+*/
+
+package ulysses.planet.pipeline;
+
+public abstract class Stage {
+	// What we call this stage.
+	private final String name;
+	// The names of the layers we read, and the layers we make.
+	private final String[] inputs;
+	private final String[] outputs;
+
+	protected Stage(String name, String[] inputs, String[] outputs) {
+		this.name = name == null ? "" : name;
+		this.inputs = inputs == null ? new String[0] : inputs.clone();
+		this.outputs = outputs == null ? new String[0] : outputs.clone();
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public int getNumInputs() {
+		return this.inputs.length;
+	}
+
+	/*
+		Returns the name of the i-th input, or null if there is no such input.
+	*/
+	public String getInput(int i) {
+		if(i < 0 || i >= this.inputs.length)
+			return null;
+
+		return this.inputs[i];
+	}
+
+	public int getNumOutputs() {
+		return this.outputs.length;
+	}
+
+	/*
+		Returns the name of the i-th output, or null if there is no such output.
+	*/
+	public String getOutput(int i) {
+		if(i < 0 || i >= this.outputs.length)
+			return null;
+
+		return this.outputs[i];
+	}
+
+	/*
+		Returns a hash of everything besides the inputs that decides our outputs.
+		If this is the same, and the inputs are the same, our outputs must be too.
+	*/
+	public abstract long getParameterHash();
+
+	/*
+		Makes our outputs from our inputs. This may be called on any thread.
+
+		ARGUMENTS:
+			inputs - the value of each input, in the same order as our input names.
+
+		RETURNS:
+			the value of each output, in the same order as our output names, or null
+			if we failed.
+	*/
+	public abstract Object[] run(Object[] inputs);
+}
@@ -0,0 +1,129 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	The Pipeline that makes a whole world: a lithosphere, its height map, and
+	a hydrosphere on top of it. The stages depend on each other like so:
+
+		lithosphere -> height map ----------> rivers -> distance to water -> hydrosphere
+		cloud frequency map ----------------/    \-------------------------/
+		river source modifier map ---------/
+		equator map ------------------------------------------------------/
+
+	So the three hydrosphere maps are generated while the lithosphere is, and
+	nothing waits on anything it does not need.
+
+	Change the generators between runs and call run again to remake only what
+	those changes affect. This includes the dimensions of the hydrosphere
+	generator: each run, we give its dimensions to every hydrosphere map.
+*/
+
+package ulysses.planet.pipeline;
+
+import ulysses.planet.Hydrosphere;
+import ulysses.planet.Lithosphere;
+import ulysses.planet.utilities.PlanetMap;
+import ulysses.planet.utilities.generators.HydrosphereGenerator;
+import ulysses.planet.utilities.generators.LithosphereGenerator;
+
+public class WorldPipeline extends Pipeline {
+	// The names of our layers.
+	public static final String LITHOSPHERE = "lithosphere";
+	public static final String HEIGHT_MAP = "heightMap";
+	public static final String CLOUD_FREQ_MAP = "cloudFreqMap";
+	public static final String EQUATOR_MAP = "equatorMap";
+	public static final String RIVER_SOURCE_MODIFIER_MAP = "riverSourceModifierMap";
+	public static final String RIVERS = "rivers";
+	public static final String ERODED_HEIGHT_MAP = "erodedHeightMap";
+	public static final String RIVER_MAP = "riverMap";
+	public static final String DIST_TO_WATER_MAP = "distToWaterMap";
+	public static final String HYDROSPHERE = "hydrosphere";
+	public static final String PRECIPITATION_MAP = "precipitationMap";
+
+	// What we generate the hydrosphere with. We take our map dimensions from it.
+	private HydrosphereGenerator hg;
+	// The stages that generate the cloud frequency, equator, and river source
+	// modifier maps.
+	private MapGeneratorStage[] mapStages;
+
+	/*
+		Sets up every stage. The hydrosphere maps are generated at the dimensions
+		of hg, and hg's own height map is not used; we give it the height map of
+		the lithosphere instead.
+
+		ARGUMENTS:
+			lg - what we generate the lithosphere with.
+			minMtn, minLnd - the minimum height of mountains and land, as given to
+			Lithosphere.getHeightMap.
+			hg - what we generate the hydrosphere with. Its cloud frequency, equator,
+			and river source modifier map generators must all be set.
+	*/
+	public WorldPipeline(LithosphereGenerator lg, float minMtn, float minLnd, HydrosphereGenerator hg) {
+		super();
+
+		int w = hg == null ? 1 : hg.getWidth();
+		int h = hg == null ? 1 : hg.getHeight();
+
+		this.hg = hg;
+		this.mapStages = new MapGeneratorStage[] {
+			new MapGeneratorStage("cloud frequency map", CLOUD_FREQ_MAP,
+								  hg == null ? null : hg.getCloudFreqMapGenerator(), w, h),
+			new MapGeneratorStage("equator map", EQUATOR_MAP,
+								  hg == null ? null : hg.getEquatorMapGenerator(), w, h),
+			new MapGeneratorStage("river source modifier map", RIVER_SOURCE_MODIFIER_MAP,
+								  hg == null ? null : hg.getRiverSourceModifierMap(), w, h)
+		};
+
+		addStage(new LithosphereStage(LITHOSPHERE, lg));
+		addStage(new HeightMapStage(LITHOSPHERE, HEIGHT_MAP, lg, minMtn, minLnd));
+
+		for(MapGeneratorStage stage : this.mapStages)
+			addStage(stage);
+
+		addStage(new RiverStage(HEIGHT_MAP, CLOUD_FREQ_MAP, RIVER_SOURCE_MODIFIER_MAP,
+								RIVERS, ERODED_HEIGHT_MAP, RIVER_MAP, hg));
+		addStage(new DistToWaterStage(ERODED_HEIGHT_MAP, RIVER_MAP, DIST_TO_WATER_MAP, hg));
+		addStage(new HydrosphereStage(RIVERS, CLOUD_FREQ_MAP, EQUATOR_MAP, DIST_TO_WATER_MAP,
+									  HYDROSPHERE, PRECIPITATION_MAP));
+	}
+
+	/*
+		Gives the dimensions of hg to every hydrosphere map, then makes every layer.
+
+		RETURNS:
+			true if every layer was made.
+	*/
+	public boolean run() {
+		if(this.hg != null) {
+			for(MapGeneratorStage stage : this.mapStages) {
+				stage.setWidth(this.hg.getWidth());
+				stage.setHeight(this.hg.getHeight());
+			}
+		}
+
+		return super.run();
+	}
+
+	/*
+		Each of these returns a layer from the last run, or null if the last run did not
+		make it.
+	*/
+	public Lithosphere getLithosphere() {
+		return (Lithosphere)getLayer(LITHOSPHERE);
+	}
+
+	public PlanetMap getErodedHeightMap() {
+		return (PlanetMap)getLayer(ERODED_HEIGHT_MAP);
+	}
+
+	public Hydrosphere getHydrosphere() {
+		return (Hydrosphere)getLayer(HYDROSPHERE);
+	}
+
+	public PlanetMap getPrecipitationMap() {
+		return (PlanetMap)getLayer(PRECIPITATION_MAP);
+	}
+
+	public PlanetMap getRiverMap() {
+		return (PlanetMap)getLayer(RIVER_MAP);
+	}
+}
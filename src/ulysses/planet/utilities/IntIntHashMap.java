@@ -0,0 +1,148 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	A hash map from ints to ints that does not box anything. We use it
+	where we need to remember a little about a few points of a huge map,
+	like which points one river has visited, without allocating an array
+	as big as the map.
+
+	Keys must not be negative. We store keys and values side by side in
+	two arrays, and find a key by starting at its hash and stepping forward
+	until we find it or an empty slot. The arrays double in size whenever
+	they are half full, so a search only looks at a few slots.
+*/
+
+package ulysses.planet.utilities;
+
+import java.util.Arrays;
+
+public class IntIntHashMap {
+	// Marks a slot with no key.
+	private static final int EMPTY = -1;
+	// The number of slots we start with. Must be a power of two.
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// The key and value of each slot.
+	private int[] keys;
+	private int[] vals;
+	// The number of keys we have.
+	private int size;
+
+	public IntIntHashMap() {
+		this.keys = new int[DEFAULT_CAPACITY];
+		this.vals = new int[DEFAULT_CAPACITY];
+		this.size = 0;
+
+		Arrays.fill(this.keys, EMPTY);
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/*
+		Returns the value of key, or defaultVal if we do not have key.
+	*/
+	public int get(int key, int defaultVal) {
+		if(key < 0)
+			return defaultVal;
+
+		int slot = findSlot(key);
+
+		return this.keys[slot] == key ? this.vals[slot] : defaultVal;
+	}
+
+	/*
+		Returns true if we have key.
+	*/
+	public boolean containsKey(int key) {
+		if(key < 0)
+			return false;
+
+		return this.keys[findSlot(key)] == key;
+	}
+
+	/*
+		Sets the value of key to val. This fails if key is negative.
+
+		RETURNS:
+			true if we set the value.
+	*/
+	public boolean put(int key, int val) {
+		if(key < 0)
+			return false;
+
+		int slot = findSlot(key);
+
+		if(this.keys[slot] != key) {
+			this.keys[slot] = key;
+			this.size += 1;
+
+			if(2 * this.size > this.keys.length) {
+				this.vals[slot] = val;
+				grow();
+				return true;
+			}
+		}
+
+		this.vals[slot] = val;
+
+		return true;
+	}
+
+	/*
+		Removes every key. We keep our arrays, so filling the map again does not
+		allocate anything until it grows past the size it was.
+	*/
+	public void clear() {
+		if(this.size == 0)
+			return;
+
+		Arrays.fill(this.keys, EMPTY);
+		this.size = 0;
+	}
+
+	/*
+		Returns the slot that has key, or the empty slot where key would go.
+	*/
+	private int findSlot(int key) {
+		int mask = this.keys.length - 1;
+		int slot = hash(key) & mask;
+
+		while(this.keys[slot] != EMPTY && this.keys[slot] != key)
+			slot = (slot + 1) & mask;
+
+		return slot;
+	}
+
+	/*
+		Doubles the number of slots, and puts every key back in.
+	*/
+	private void grow() {
+		int[] oldKeys = this.keys;
+		int[] oldVals = this.vals;
+		int slot;
+
+		this.keys = new int[oldKeys.length * 2];
+		this.vals = new int[oldVals.length * 2];
+		Arrays.fill(this.keys, EMPTY);
+
+		for(int i = 0; i < oldKeys.length; ++i) {
+			if(oldKeys[i] == EMPTY)
+				continue;
+
+			slot = findSlot(oldKeys[i]);
+			this.keys[slot] = oldKeys[i];
+			this.vals[slot] = oldVals[i];
+		}
+	}
+
+	/*
+		Spreads the bits of key out, so nearby keys do not land in nearby slots.
+	*/
+	private static int hash(int key) {
+		int h = key * 0x9e3779b9;
+
+		return h ^ (h >>> 16);
+	}
+}
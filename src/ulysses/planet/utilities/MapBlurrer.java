@@ -0,0 +1,193 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Blurs a PlanetMap with either a Gaussian kernel or a box kernel of some
+	radius. This replaces calling PlanetMap.blurr over and over again.
+
+	A 2D Gaussian blur is separable. That is, we get the same result
+	by blurring every row, and then blurring every column of that. So
+	instead of (2r + 1)^2 reads per point, we only need 2 * (2r + 1).
+
+	Each pass reads from one buffer and writes to another, so no point is
+	ever blurred with values that were already blurred in the same pass.
+	We split the rows into stripes and blur the stripes at the same time
+	with a ForkJoinPool. Every point is always summed in the same order,
+	so the result does not depend on the number of threads.
+
+	A box kernel is instead done with a SummedAreaTable, which costs the
+	same for any radius.
+
+	Like the rest of the world, the blur wraps around at the edges.
+*/
+
+package ulysses.planet.utilities;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class MapBlurrer {
+	// Roughly how many points each stripe of rows should have.
+	private static final int POINTS_PER_STRIPE = 16384;
+
+	// Used to blur stripes of rows at the same time.
+	private ForkJoinPool pool;
+	// How many points on each side of a point we blur it with.
+	private int radius;
+	// If true, we use a Gaussian kernel. Otherwise, we use a box kernel.
+	private boolean gaussian;
+
+	public MapBlurrer(ForkJoinPool pool) {
+		setPool(pool);
+
+		this.radius = 1;
+		this.gaussian = true;
+	}
+
+	public ForkJoinPool getPool() {
+		return this.pool;
+	}
+
+	public void setPool(ForkJoinPool val) {
+		if(val == null)
+			val = ForkJoinPool.commonPool();
+
+		this.pool = val;
+	}
+
+	public int getRadius() {
+		return this.radius;
+	}
+
+	public void setRadius(int val) {
+		if(val < 0)
+			val = 1;
+
+		this.radius = val;
+	}
+
+	public boolean getGaussian() {
+		return this.gaussian;
+	}
+
+	public void setGaussian(boolean val) {
+		this.gaussian = val;
+	}
+
+	/*
+		Blurs map in place. For a Gaussian kernel, we first blur every row
+		into a temporary buffer, then we blur every column of the buffer
+		back into map. For a box kernel, we box filter with a SummedAreaTable.
+
+		ARGUMENTS:
+			map - the map to blur.
+	*/
+	public void blurr(PlanetMap map) {
+		if(map == null || this.radius == 0)
+			return;
+
+		if(!this.gaussian) {
+			float[] filtered = new SummedAreaTable(map).boxFilter(this.radius, this.pool).getDataArray();
+			System.arraycopy(filtered, 0, map.getDataArray(), 0, filtered.length);
+			return;
+		}
+
+		final int width = map.getWidth();
+		final int height = map.getHeight();
+		final float[] data = map.getDataArray();
+		final float[] temp = new float[data.length];
+		final float[] kernel = getKernel();
+		// For each offset along a row or column, the wrapped
+		// coordinate. This way we never need a modulo.
+		final int[] wrapX = getWrappedCoords(width);
+		final int[] wrapY = getWrappedCoords(height);
+		int grain = POINTS_PER_STRIPE / width;
+
+		ParallelRange.run(this.pool, 0, height, grain,
+			(start, end) -> blurrRows(data, temp, width, kernel, wrapX, start, end));
+		ParallelRange.run(this.pool, 0, height, grain,
+			(start, end) -> blurrColumns(temp, data, width, kernel, wrapY, start, end));
+	}
+
+	/*
+		Blurs rows start to end - 1 of src horizontally, and stores them in dst.
+	*/
+	private void blurrRows(float[] src, float[] dst, int width, float[] kernel,
+						   int[] wrapX, int start, int end)
+	{
+		int row;
+		float val;
+
+		for(int y = start; y < end; ++y) {
+			row = y * width;
+
+			for(int x = 0; x < width; ++x) {
+				val = 0.0f;
+				for(int k = 0; k < kernel.length; ++k)
+					val += kernel[k] * src[row + wrapX[x + k]];
+
+				dst[row + x] = val;
+			}
+		}
+	}
+
+	/*
+		Blurs rows start to end - 1 of dst vertically, reading from src. Rather than
+		walk down each column, we add whole rows of src at a time, which is much
+		friendlier to the cache. Each point still adds up its values in kernel order.
+	*/
+	private void blurrColumns(float[] src, float[] dst, int width, float[] kernel,
+							  int[] wrapY, int start, int end)
+	{
+		int row, srcRow;
+		float weight;
+
+		for(int y = start; y < end; ++y) {
+			row = y * width;
+
+			for(int x = 0; x < width; ++x)
+				dst[row + x] = 0.0f;
+
+			for(int k = 0; k < kernel.length; ++k) {
+				weight = kernel[k];
+				srcRow = wrapY[y + k] * width;
+
+				for(int x = 0; x < width; ++x)
+					dst[row + x] += weight * src[srcRow + x];
+			}
+		}
+	}
+
+	/*
+		Builds the weights of our 1D Gaussian kernel. It has 2 * radius + 1 weights
+		that add up to 1, and a standard deviation of radius / 2.
+	*/
+	private float[] getKernel() {
+		float[] result = new float[2 * this.radius + 1];
+		double sigma = this.radius / 2.0;
+		double sum = 0.0;
+		double w;
+
+		for(int k = -this.radius; k <= this.radius; ++k) {
+			w = Math.exp(-(k * k) / (2.0 * sigma * sigma));
+			result[k + this.radius] = (float)w;
+			sum += w;
+		}
+
+		for(int k = 0; k < result.length; ++k)
+			result[k] = (float)(result[k] / sum);
+
+		return result;
+	}
+
+	/*
+		Returns the wrapped coordinate for every offset from -radius to
+		size - 1 + radius. The coordinate for offset i is at index i + radius.
+	*/
+	private int[] getWrappedCoords(int size) {
+		int[] result = new int[size + 2 * this.radius];
+
+		for(int i = 0; i < result.length; ++i)
+			result[i] = ((i - this.radius) % size + size) % size;
+
+		return result;
+	}
+}
@@ -0,0 +1,353 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	A MapExpression describes some element-wise math on PlanetMaps without
+	doing it yet. For example, the height map is the magnitude of the
+	tectonics, thickness, and orogenics maps, normalized. Doing this with
+	combineWith, sqrt, and normalize walks over every point of every map
+	four times, and makes a new map along the way.
+
+	Instead, we build a tree of the operations, like so:
+
+		MapExpression.sumOfSquares(tectonics, others).sqrt().evaluateNormalized()
+
+	and nothing is computed until we call evaluate or evaluateNormalized.
+	Then, we work through the maps in chunks of CHUNK_SIZE points. Each chunk
+	goes through the whole tree while it is still in the cache, so every
+	input map is read once and the result is written once. evaluateNormalized
+	also finds the min and max while it does this, and so only needs one more
+	pass to normalize. Chunks are evaluated at the same time with a
+	ForkJoinPool.
+
+	Every operation gives exactly the same values as the PlanetMap method
+	it replaces. For example, sumOfSquares adds the squares in the same order
+	as combineWith does.
+*/
+
+package ulysses.planet.utilities;
+
+import java.util.concurrent.ForkJoinPool;
+
+public abstract class MapExpression {
+	// The number of points we evaluate at a time.
+	private static final int CHUNK_SIZE = 4096;
+	// The number of chunks each task evaluates without splitting.
+	private static final int CHUNKS_PER_TASK = 4;
+
+	// The dimensions of every map in this expression.
+	protected final int width, height;
+	// The number of scratch buffers evaluating this expression needs.
+	protected final int depth;
+
+	protected MapExpression(int width, int height, int depth) {
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/*
+		Evaluates points start to start + len - 1 of this expression and stores
+		them in out[0] to out[len - 1].
+
+		ARGUMENTS:
+			start - the index of the first point to evaluate.
+			len - the number of points to evaluate.
+			out - where we store the result.
+			scratch - buffers for subexpressions to use. An expression may use
+			scratch[level] to scratch[level + depth - 1].
+			level - the first scratch buffer this expression may use.
+	*/
+	protected abstract void evaluate(int start, int len, float[] out, float[][] scratch, int level);
+
+	/*
+		Returns an expression that is just the values of map.
+	*/
+	public static MapExpression of(PlanetMap map) {
+		if(map == null)
+			return null;
+
+		return new Source(map);
+	}
+
+	/*
+		Returns the expression first^2 + rest[0]^2 + rest[1]^2 + ...
+		This gives the same values as first.combineWith(rest).
+
+		RETURNS:
+			the expression, or null if any map is null or a different size
+			than first.
+	*/
+	public static MapExpression sumOfSquares(PlanetMap first, PlanetMap[] rest) {
+		if(first == null || rest == null)
+			return null;
+
+		MapExpression result = of(first).square();
+
+		for(int i = 0; i < rest.length && result != null; ++i) {
+			if(rest[i] == null)
+				return null;
+
+			result = result.plus(of(rest[i]).square());
+		}
+
+		return result;
+	}
+
+	/*
+		Returns this expression squared.
+	*/
+	public MapExpression square() {
+		return new Unary(this, Unary.SQUARE, 0.0f);
+	}
+
+	/*
+		Returns the square root of this expression.
+	*/
+	public MapExpression sqrt() {
+		return new Unary(this, Unary.SQRT, 0.0f);
+	}
+
+	/*
+		Returns this expression multiplied by scalar.
+	*/
+	public MapExpression scale(float scalar) {
+		return new Unary(this, Unary.SCALE, scalar);
+	}
+
+	/*
+		Returns this expression plus other.
+
+		RETURNS:
+			the sum, or null if other is null or a different size.
+	*/
+	public MapExpression plus(MapExpression other) {
+		if(other == null || other.width != this.width || other.height != this.height)
+			return null;
+
+		return new Sum(this, other);
+	}
+
+	/*
+		Returns this expression, except every point where mask is less than
+		or equal to maxVal is val instead. For example, we use this to set
+		every point below sea level to 0.
+
+		RETURNS:
+			the masked expression, or null if mask is null or a different size.
+	*/
+	public MapExpression replaceWhere(PlanetMap mask, float maxVal, float val) {
+		if(mask == null || mask.getWidth() != this.width || mask.getHeight() != this.height)
+			return null;
+
+		return new Replace(this, mask, maxVal, val);
+	}
+
+	/*
+		Computes this expression on the common pool.
+
+		RETURNS:
+			a new map with the value of this expression at every point.
+	*/
+	public PlanetMap evaluate() {
+		return evaluate(null);
+	}
+
+	/*
+		Computes this expression, using pool to evaluate chunks at the same time.
+		If pool is null, we use the common pool.
+	*/
+	public PlanetMap evaluate(ForkJoinPool pool) {
+		PlanetMap result = new PlanetMap(this.width, this.height);
+
+		evaluateInto(result, null, null, pool);
+
+		return result;
+	}
+
+	/*
+		Computes this expression on the common pool, and normalizes the result
+		the same way PlanetMap.normalize does.
+
+		RETURNS:
+			a new map with the normalized value of this expression at every point.
+	*/
+	public PlanetMap evaluateNormalized() {
+		return evaluateNormalized(null);
+	}
+
+	/*
+		Computes and normalizes this expression, using pool to evaluate chunks
+		at the same time. If pool is null, we use the common pool.
+	*/
+	public PlanetMap evaluateNormalized(ForkJoinPool pool) {
+		final PlanetMap result = new PlanetMap(this.width, this.height);
+		final float[] data = result.getDataArray();
+		int numChunks = (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		// The min and max of each chunk.
+		float[] chunkMins = new float[numChunks];
+		float[] chunkMaxs = new float[numChunks];
+		float min, max;
+
+		evaluateInto(result, chunkMins, chunkMaxs, pool);
+
+		min = chunkMins[0];
+		max = chunkMaxs[0];
+		for(int c = 1; c < numChunks; ++c) {
+			min = chunkMins[c] < min ? chunkMins[c] : min;
+			max = chunkMaxs[c] > max ? chunkMaxs[c] : max;
+		}
+
+		final float finalMin = min;
+		final float maxDist = max - min;
+
+		ParallelRange.run(pool, 0, numChunks, CHUNKS_PER_TASK, (startChunk, endChunk) -> {
+			int end = Math.min(endChunk * CHUNK_SIZE, data.length);
+
+			MapKernels.get().normalize(data, finalMin, maxDist, startChunk * CHUNK_SIZE, end);
+		});
+
+		return result;
+	}
+
+	/*
+		Evaluates every chunk of this expression into result. If chunkMins and
+		chunkMaxs are not null, we also store the min and max of each chunk.
+	*/
+	private void evaluateInto(PlanetMap result, final float[] chunkMins, final float[] chunkMaxs,
+							  ForkJoinPool pool)
+	{
+		final float[] data = result.getDataArray();
+		int numChunks = (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+		ParallelRange.run(pool, 0, numChunks, CHUNKS_PER_TASK, (startChunk, endChunk) -> {
+			float[] out = new float[CHUNK_SIZE];
+			float[][] scratch = new float[this.depth][CHUNK_SIZE];
+			MapKernels kernels = MapKernels.get();
+			int start, len;
+
+			for(int c = startChunk; c < endChunk; ++c) {
+				start = c * CHUNK_SIZE;
+				len = Math.min(CHUNK_SIZE, data.length - start);
+
+				evaluate(start, len, out, scratch, 0);
+				System.arraycopy(out, 0, data, start, len);
+
+				if(chunkMins == null)
+					continue;
+
+				chunkMins[c] = kernels.min(out, 0, len);
+				chunkMaxs[c] = kernels.max(out, 0, len);
+			}
+		});
+	}
+
+	/*
+		The values of a PlanetMap.
+	*/
+	private static class Source extends MapExpression {
+		private final float[] data;
+
+		Source(PlanetMap map) {
+			super(map.getWidth(), map.getHeight(), 0);
+
+			this.data = map.getDataArray();
+		}
+
+		protected void evaluate(int start, int len, float[] out, float[][] scratch, int level) {
+			System.arraycopy(this.data, start, out, 0, len);
+		}
+	}
+
+	/*
+		An operation on the values of a single expression.
+	*/
+	private static class Unary extends MapExpression {
+		static final int SQUARE = 0;
+		static final int SQRT = 1;
+		static final int SCALE = 2;
+
+		private final MapExpression child;
+		private final int op;
+		// The scalar for SCALE.
+		private final float scalar;
+
+		Unary(MapExpression child, int op, float scalar) {
+			super(child.width, child.height, child.depth);
+
+			this.child = child;
+			this.op = op;
+			this.scalar = scalar;
+		}
+
+		protected void evaluate(int start, int len, float[] out, float[][] scratch, int level) {
+			this.child.evaluate(start, len, out, scratch, level);
+
+			if(this.op == SQUARE)
+				MapKernels.get().square(out, 0, len);
+			else if(this.op == SQRT)
+				MapKernels.get().sqrt(out, 0, len);
+			else
+				MapKernels.get().scale(out, this.scalar, 0, len);
+		}
+	}
+
+	/*
+		The sum of two expressions. We evaluate the left side into the output,
+		and the right side into our scratch buffer.
+	*/
+	private static class Sum extends MapExpression {
+		private final MapExpression left, right;
+
+		Sum(MapExpression left, MapExpression right) {
+			super(left.width, left.height, Math.max(left.depth, right.depth + 1));
+
+			this.left = left;
+			this.right = right;
+		}
+
+		protected void evaluate(int start, int len, float[] out, float[][] scratch, int level) {
+			float[] temp = scratch[level];
+
+			this.left.evaluate(start, len, out, scratch, level);
+			this.right.evaluate(start, len, temp, scratch, level + 1);
+
+			MapKernels.get().add(out, temp, 0, len);
+		}
+	}
+
+	/*
+		An expression where every point whose mask is at most maxVal is replaced.
+	*/
+	private static class Replace extends MapExpression {
+		private final MapExpression child;
+		private final float[] mask;
+		private final float maxVal;
+		private final float val;
+
+		Replace(MapExpression child, PlanetMap mask, float maxVal, float val) {
+			super(child.width, child.height, child.depth);
+
+			this.child = child;
+			this.mask = mask.getDataArray();
+			this.maxVal = maxVal;
+			this.val = val;
+		}
+
+		protected void evaluate(int start, int len, float[] out, float[][] scratch, int level) {
+			this.child.evaluate(start, len, out, scratch, level);
+
+			for(int i = 0; i < len; ++i) {
+				if(this.mask[start + i] <= this.maxVal)
+					out[i] = this.val;
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	The element-wise loops behind PlanetMap and MapExpression. Every method
+	works on the part of an array from index "from" up to, but not including,
+	index "to".
+
+	There are two implementations. VectorMapKernels uses the Java Vector API
+	(jdk.incubator.vector) so that each loop works on several floats per
+	instruction. ScalarMapKernels is a plain loop over each float. We use
+	the vector one when the jdk.incubator.vector module is available (that
+	is, when java is run with --add-modules jdk.incubator.vector), and the
+	scalar one otherwise. Setting the system property ulysses.scalarKernels
+	to true also forces the scalar one.
+
+	Both give exactly the same values. We never fuse a multiply and an add,
+	and square roots and divisions are exact in both, so it does not matter
+	how many floats are done at once.
+*/
+
+package ulysses.planet.utilities;
+
+abstract class MapKernels {
+	// The kernels everything uses.
+	private static final MapKernels KERNELS = chooseKernels();
+
+	/*
+		Returns the kernels to use.
+	*/
+	static MapKernels get() {
+		return KERNELS;
+	}
+
+	/*
+		Returns the scalar kernels, no matter what get() uses.
+	*/
+	static MapKernels getScalar() {
+		return new ScalarMapKernels();
+	}
+
+	/*
+		Returns the vector kernels, or null if the Vector API is not available.
+	*/
+	static MapKernels getVector() {
+		if(!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+			return null;
+
+		// We load the vector kernels by name, so that this class still
+		// loads when the vector module is not there.
+		try {
+			return (MapKernels)Class.forName("ulysses.planet.utilities.VectorMapKernels")
+									.getDeclaredConstructor().newInstance();
+		}
+
+		catch(Exception | LinkageError e) {
+			return null;
+		}
+	}
+
+	private static MapKernels chooseKernels() {
+		MapKernels result = null;
+
+		if(!Boolean.getBoolean("ulysses.scalarKernels"))
+			result = getVector();
+
+		return result != null ? result : getScalar();
+	}
+
+	/*
+		Returns the name of these kernels, for printing.
+	*/
+	abstract String getName();
+
+	/*
+		a[i] = a[i] * a[i]
+	*/
+	abstract void square(float[] a, int from, int to);
+
+	/*
+		dst[i] = src[i] * src[i]
+	*/
+	abstract void square(float[] dst, float[] src, int from, int to);
+
+	/*
+		dst[i] = dst[i] + src[i] * src[i]
+	*/
+	abstract void addSquare(float[] dst, float[] src, int from, int to);
+
+	/*
+		dst[i] = dst[i] + src[i]
+	*/
+	abstract void add(float[] dst, float[] src, int from, int to);
+
+	/*
+		a[i] = sqrt(a[i])
+	*/
+	abstract void sqrt(float[] a, int from, int to);
+
+	/*
+		a[i] = a[i] * scalar
+	*/
+	abstract void scale(float[] a, float scalar, int from, int to);
+
+	/*
+		a[i] = (a[i] - min) / maxDist, or 0 if maxDist is 0.
+	*/
+	abstract void normalize(float[] a, float min, float maxDist, int from, int to);
+
+	/*
+		Returns the smallest value of a. Assumes from < to.
+	*/
+	abstract float min(float[] a, int from, int to);
+
+	/*
+		Returns the largest value of a. Assumes from < to.
+	*/
+	abstract float max(float[] a, int from, int to);
+}
@@ -0,0 +1,73 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Splits a range of integers [start, end) into smaller ranges and runs
+	some work on each of them with a ForkJoinPool. We use this to work on
+	stripes of rows of a PlanetMap at the same time.
+
+	The range is split in half until each piece has at most grain integers.
+	How the pieces are split does not depend on the number of threads, so as
+	long as the work for each piece only writes to its own part of the
+	output, the result is the same no matter how many threads run.
+*/
+
+package ulysses.planet.utilities;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelRange extends RecursiveAction {
+	// RecursiveAction is Serializable, though we never serialize a range.
+	private static final long serialVersionUID = 1L;
+
+	/*
+		The work to do on each piece of the range.
+	*/
+	public interface Body {
+		void run(int start, int end);
+	}
+
+	// The part of the range this task covers.
+	private final int start, end;
+	// The largest piece we run without splitting.
+	private final int grain;
+	// The work to do on each piece.
+	private final Body body;
+
+	public ParallelRange(int start, int end, int grain, Body body) {
+		this.start = start;
+		this.end = end;
+		this.grain = grain < 1 ? 1 : grain;
+		this.body = body;
+	}
+
+	protected void compute() {
+		if(this.end - this.start <= this.grain) {
+			this.body.run(this.start, this.end);
+			return;
+		}
+
+		int mid = (this.start + this.end) >>> 1;
+
+		invokeAll(new ParallelRange(this.start, mid, this.grain, this.body),
+				  new ParallelRange(mid, this.end, this.grain, this.body));
+	}
+
+	/*
+		Runs body over [start, end) on pool and waits for it to finish.
+
+		ARGUMENTS:
+			pool - the pool to run on. If null, we use the common pool.
+			start, end - the range to run over. Nothing happens if it is empty.
+			grain - the largest piece of the range to run without splitting.
+			body - the work to do on each piece.
+	*/
+	public static void run(ForkJoinPool pool, int start, int end, int grain, Body body) {
+		if(start >= end || body == null)
+			return;
+		if(pool == null)
+			pool = ForkJoinPool.commonPool();
+
+		pool.invoke(new ParallelRange(start, end, grain, body));
+	}
+}
@@ -17,8 +17,8 @@ For memory efficieny's sake, we use a 1D array. To compute an index
 
 package ulysses.planet.utilities;
 
-// For creating a list of the points that is sorted.
-import java.awt.geom.Point2D;
+// For sorting points by value.
+import java.util.Arrays;
 
 public class PlanetMap {
 	// The width and height of the map.
@@ -38,6 +38,32 @@ public class PlanetMap {
 		this.data = new float[this.width * this.height];
 	}
 
+	/*
+		Creates a map that uses data as its values, without copying it. The
+		value of point (x, y) is data[y * width + x]. This lets generators fill
+		in a map's values directly. Note that any later change to data changes
+		the map.
+
+		ARGUMENTS:
+			width, height - the dimensions of the map.
+			data - the values of the map. If this is null or its length is not
+			width * height, we start with a map of zeroes instead.
+	*/
+	public PlanetMap(int width, int height, float[] data) {
+		if(width <= 0)
+			width = 256;
+		if(height <= 0)
+			height = 128;
+
+		this.width = width;
+		this.height = height;
+
+		if(data == null || data.length != this.width * this.height)
+			data = new float[this.width * this.height];
+
+		this.data = data;
+	}
+
 	public int getWidth() {
 		return this.width;
 	}
@@ -100,14 +126,21 @@ public class PlanetMap {
 		setData(y * this.width + x, val);
 	}
 
+	/*
+		Returns the array that backs this map. Only the classes that work
+		directly on the data of a map, like MapBlurrer, should use this.
+	*/
+	float[] getDataArray() {
+		return this.data;
+	}
+
 	public PlanetMap getCopy() {
 		if(data == null)
 			return null;
 
 		PlanetMap p = new PlanetMap(this.width, this.height);
 
-		for(int i = 0; i < this.data.length; ++i)
-			p.data[i] = this.data[i];
+		System.arraycopy(this.data, 0, p.data, 0, this.data.length);
 
 		return p;
 	}
@@ -127,27 +160,13 @@ public class PlanetMap {
 		// A value we divide every point by.
 		float maxDist;
 
-		// Assume the first point is both the max and min.
-		// This way, we can compare against every other point.
-		max = this.data[0];
-		min = this.data[0];
-
 		// First find the max and the min.
-		for(int i = 0; i < this.data.length; ++i) {
-			if(this.data[i] > max)
-				max = this.data[i];
-			if(this.data[i] < min)
-				min = this.data[i];
-		}
+		max = getMaxVal();
+		min = getMinVal();
 
 		maxDist = max - min;
 
-		for(int i = 0; i < this.data.length; ++i) {
-			if(maxDist == 0.0f)
-				this.data[i] = 0.0f;
-			else
-				this.data[i] = (this.data[i] - min) / maxDist;
-		}
+		MapKernels.get().normalize(this.data, min, maxDist, 0, this.data.length);
 	}
 
 	/*
@@ -171,13 +190,13 @@ public class PlanetMap {
 			return null;
 
 		PlanetMap r = new PlanetMap(this.width, this.height);
+		MapKernels kernels = MapKernels.get();
 
-		for(int i = 0; i < this.data.length; ++i)
-		{
-			r.data[i] = this.data[i] * this.data[i];
-			for(int j = 0; j < p.length; ++j)
-				r.data[i] += p[j].data[i] * p[j].data[i];
-		}
+		// We add one map at a time, which adds the squares in
+		// the same order as adding every map for one point at a time.
+		kernels.square(r.data, this.data, 0, this.data.length);
+		for(int j = 0; j < p.length; ++j)
+			kernels.addSquare(r.data, p[j].data, 0, this.data.length);
 
 		return r;
 	}
@@ -186,105 +205,170 @@ public class PlanetMap {
 		Performs an element-wise square root operation.
 	*/
 	public void sqrt() {
-		for(int i = 0; i < this.data.length; ++i)
-			this.data[i] = (float)Math.sqrt(this.data[i]);
+		MapKernels.get().sqrt(this.data, 0, this.data.length);
 	}
 
 	/*
-		Returns a list of the data in a set of 2D points where x is the position
-		and y is the map value. This data is sorted from smallest to largest.
+		Returns the index of every point in this map, ordered from the point
+		with the smallest value to the point with the largest. Points with the
+		same value are ordered by index.
+
+		We pack each value and its index into a single long (see packKey) so
+		that sorting the longs sorts the points. This lets us use the parallel
+		primitive sort from the standard library rather than sorting objects.
+
+		RETURNS:
+			the indices of the points of this map, sorted by value.
 	*/
-	public Point2D.Float[] getSortedPoints() {
-		int len = this.width * this.height;
-		Point2D.Float[] temp = new Point2D.Float[len];
+	public int[] getSortedIndices() {
+		long[] keys = new long[this.data.length];
+		int[] result = new int[this.data.length];
 
-		// Add the points to the array to sort.
-		for(int i = 0; i < len; ++i)
-			temp[i] = new Point2D.Float(i, this.data[i]);
+		for(int i = 0; i < this.data.length; ++i)
+			keys[i] = packKey(this.data[i], i);
 
-		// Now sort the temp points and find the final values.
-		sortPoints(temp, 0, len - 1);
+		Arrays.parallelSort(keys);
 
-		return temp;
+		for(int i = 0; i < keys.length; ++i)
+			result[i] = unpackIndex(keys[i]);
+
+		return result;
 	}
 
 	/*
-		A simple implementation of quicksort. Divides a set of points
-		into two parts based on a partitioning scheme, and then calls the
-		function again on those two parts. When we sort, we sort based
-		on the y component. The x component is just an index for a point,
-		the y component is the height value.
+		Returns the indices of the k points with the largest values, from
+		largest to smallest. This is the same as the last k entries of
+		getSortedIndices in reverse, including how points with the same value
+		are ordered, but does not sort the whole map.
+
+		We keep the best k keys seen so far in a min heap. A point only
+		enters the heap if it beats the smallest key in it. This takes
+		O(n log k) time and does not allocate anything per point.
 
 		ARGUMENTS:
-			points - the points to sort.
-			s, e - the start and end indecies of the part of points
-			that we will parition.
+			k - the number of indices we want. If k is larger than the map,
+			we return every index.
+
+		RETURNS:
+			the indices of the k largest points, largest first. If k < 1, we
+			return an empty array.
 	*/
-	private void sortPoints(Point2D.Float[] points, int s, int e) {
-		if(e <= s)
-			return;
+	public int[] getTopIndices(int k) {
+		k = k > this.data.length ? this.data.length : k;
+		k = k < 0 ? 0 : k;
 
-		int m = partition(points, s, e);
+		long[] heap = new long[k];
+		int[] result = new int[k];
+		int size = 0;
+		long key;
 
-		sortPoints(points, s, m);
-		sortPoints(points, m + 1, e);
+		if(k == 0)
+			return result;
+
+		for(int i = 0; i < this.data.length; ++i) {
+			key = packKey(this.data[i], i);
+
+			if(size < k) {
+				heap[size] = key;
+				siftUp(heap, size);
+				size += 1;
+			}
+
+			else if(key > heap[0]) {
+				heap[0] = key;
+				siftDown(heap, size);
+			}
+		}
+
+		// Only k keys are left, so sorting them is cheap.
+		Arrays.sort(heap);
+
+		for(int i = 0; i < k; ++i)
+			result[i] = unpackIndex(heap[k - 1 - i]);
+
+		return result;
 	}
 
 	/*
-		Implements the partitioning scheme for quicksort. We essentially
-		grab the first point, then swap everything smaller than it to the
-		left of it, and everything larger to the right.
+		Moves the key at index i of a min heap up until its parent is smaller.
 	*/
-	private int partition(Point2D.Float[] points, int s, int e) {
-		int i = s - 1;
-		int j = e + 1;
-
-		Point2D.Float p = points[s];
-		Point2D.Float temp;
+	private void siftUp(long[] heap, int i) {
+		long key = heap[i];
+		int parent;
 
-		while(true) {
-			do {
-				i = i + 1;
-			} while(points[i].getY() < p.getY());
+		while(i > 0) {
+			parent = (i - 1) / 2;
+			if(heap[parent] <= key)
+				break;
 
-			do {
-				j = j - 1;
-			} while(points[j].getY() > p.getY());
+			heap[i] = heap[parent];
+			i = parent;
+		}
 
-			if(i >= j)
-				return j;
+		heap[i] = key;
+	}
 
-			temp = points[i];
-			points[i] = points[j];
-			points[j] = temp;
+	/*
+		Moves the root of a min heap of the given size down until both of its
+		children are larger.
+	*/
+	private void siftDown(long[] heap, int size) {
+		long key = heap[0];
+		int i = 0;
+		int child;
+
+		while((child = 2 * i + 1) < size) {
+			if(child + 1 < size && heap[child + 1] < heap[child])
+				child += 1;
+			if(key <= heap[child])
+				break;
+
+			heap[i] = heap[child];
+			i = child;
 		}
+
+		heap[i] = key;
 	}
 
-	public float getMaxVal() {
-		float max = this.data[0];
+	/*
+		Packs a value and its index into a long such that comparing two
+		keys as longs compares the values first and the indices second.
 
-		for(int i = 0; i < this.data.length; ++i) {
-			if(this.data[i] > max)
-				max = this.data[i];
-		}
+		The upper 32 bits are the bits of the float, where the bits of
+		negative values are flipped so that the bits order the same way the
+		floats do. The lower 32 bits are the index.
 
-		return max;
+		ARGUMENTS:
+			val - the value of the point.
+			index - the index of the point. Must not be negative.
+
+		RETURNS:
+			the packed key.
+	*/
+	public static long packKey(float val, int index) {
+		int bits = Float.floatToIntBits(val);
+		bits ^= (bits >> 31) & 0x7fffffff;
+
+		return ((long)bits << 32) | (index & 0xffffffffL);
 	}
 
-	public float getMinVal() {
-		float min = this.data[0];
+	/*
+		Returns the index that was packed into key by packKey.
+	*/
+	public static int unpackIndex(long key) {
+		return (int)key;
+	}
 
-		for(int i = 0; i < this.data.length; ++i) {
-			if(this.data[i] < min)
-				min = this.data[i];
-		}
+	public float getMaxVal() {
+		return MapKernels.get().max(this.data, 0, this.data.length);
+	}
 
-		return min;
+	public float getMinVal() {
+		return MapKernels.get().min(this.data, 0, this.data.length);
 	}
 
 	public void scaleBy(float scalar) {
-		for(int i = 0; i < this.data.length; ++i)
-			this.data[i] *= scalar;
+		MapKernels.get().scale(this.data, scalar, 0, this.data.length);
 	}
 
 	public void blurr(int numBlurrs) {
@@ -0,0 +1,75 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	The plain loop implementation of MapKernels. We use these when the
+	Vector API is not available.
+*/
+
+package ulysses.planet.utilities;
+
+class ScalarMapKernels extends MapKernels {
+	String getName() {
+		return "scalar";
+	}
+
+	void square(float[] a, int from, int to) {
+		for(int i = from; i < to; ++i)
+			a[i] = a[i] * a[i];
+	}
+
+	void square(float[] dst, float[] src, int from, int to) {
+		for(int i = from; i < to; ++i)
+			dst[i] = src[i] * src[i];
+	}
+
+	void addSquare(float[] dst, float[] src, int from, int to) {
+		for(int i = from; i < to; ++i)
+			dst[i] += src[i] * src[i];
+	}
+
+	void add(float[] dst, float[] src, int from, int to) {
+		for(int i = from; i < to; ++i)
+			dst[i] += src[i];
+	}
+
+	void sqrt(float[] a, int from, int to) {
+		for(int i = from; i < to; ++i)
+			a[i] = (float)Math.sqrt(a[i]);
+	}
+
+	void scale(float[] a, float scalar, int from, int to) {
+		for(int i = from; i < to; ++i)
+			a[i] *= scalar;
+	}
+
+	void normalize(float[] a, float min, float maxDist, int from, int to) {
+		for(int i = from; i < to; ++i) {
+			if(maxDist == 0.0f)
+				a[i] = 0.0f;
+			else
+				a[i] = (a[i] - min) / maxDist;
+		}
+	}
+
+	float min(float[] a, int from, int to) {
+		float result = a[from];
+
+		for(int i = from; i < to; ++i) {
+			if(a[i] < result)
+				result = a[i];
+		}
+
+		return result;
+	}
+
+	float max(float[] a, int from, int to) {
+		float result = a[from];
+
+		for(int i = from; i < to; ++i) {
+			if(a[i] > result)
+				result = a[i];
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,158 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	A SummedAreaTable (also called an integral image) lets us find the sum
+	of any rectangle of a PlanetMap in constant time. We build it once from
+	a map. Entry (x, y) of the table is the sum of every point of the map
+	above and to the left of (x, y). That is, the sum of every point (i, j)
+	where i < x and j < y. The sum of any rectangle is then found with four
+	entries of the table.
+
+	Like the rest of the world, the table wraps around. A rectangle may start
+	anywhere, even at negative coordinates, and be as large as we want. Parts
+	of it that fall off an edge of the map come back in on the other side.
+	This also lets us box filter a map with any radius in a single pass.
+
+	We store the table as doubles. This way, the sums of large maps do not
+	lose precision. Note that this means the table takes twice the memory of
+	the map it is built from.
+*/
+
+package ulysses.planet.utilities;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class SummedAreaTable {
+	// Roughly how many points each stripe of rows should have
+	// when we box filter.
+	private static final int POINTS_PER_STRIPE = 16384;
+
+	// The dimensions of the map this table was built from.
+	private final int width, height;
+	// The table itself. It is (width + 1) by (height + 1), where
+	// the first row and column are all 0.
+	private final double[] table;
+
+	public SummedAreaTable(PlanetMap map) {
+		this.width = map.getWidth();
+		this.height = map.getHeight();
+		this.table = new double[(this.width + 1) * (this.height + 1)];
+
+		// The sum of the current row up to x.
+		double rowSum;
+		int stride = this.width + 1;
+
+		for(int y = 0; y < this.height; ++y) {
+			rowSum = 0.0;
+
+			for(int x = 0; x < this.width; ++x) {
+				rowSum += map.getData(x, y);
+				this.table[(y + 1) * stride + x + 1] = this.table[y * stride + x + 1] + rowSum;
+			}
+		}
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/*
+		Returns the sum of every point in a rectangle of the map.
+
+		ARGUMENTS:
+			(x, y) - the top left corner of the rectangle. This may be anywhere,
+			since the map wraps around.
+			w, h - the width and height of the rectangle.
+
+		RETURNS:
+			the sum of the rectangle, or 0 if w or h is less than 1.
+	*/
+	public double getSum(int x, int y, int w, int h) {
+		if(w < 1 || h < 1)
+			return 0.0;
+
+		long x1 = (long)x + w;
+		long y1 = (long)y + h;
+
+		return getPrefixSum(x1, y1) - getPrefixSum(x, y1) - getPrefixSum(x1, y) + getPrefixSum(x, y);
+	}
+
+	/*
+		Returns the mean of every point in a rectangle of the map. See getSum.
+
+		RETURNS:
+			the mean of the rectangle, or 0 if w or h is less than 1.
+	*/
+	public double getMean(int x, int y, int w, int h) {
+		if(w < 1 || h < 1)
+			return 0.0;
+
+		return getSum(x, y, w, h) / ((double)w * h);
+	}
+
+	/*
+		Box filters the map this table was built from. Every point is set to the
+		mean of the (2 * radius + 1) by (2 * radius + 1) square centered on it.
+		Each point only needs four entries of the table, so any radius costs the
+		same. Rows are filtered in stripes at the same time on the common pool.
+
+		ARGUMENTS:
+			radius - how many points on each side of a point we average.
+
+		RETURNS:
+			the filtered map. If radius is less than 1, a map equal to the one
+			this table was built from.
+	*/
+	public PlanetMap boxFilter(int radius) {
+		return boxFilter(radius, null);
+	}
+
+	/*
+		The same as boxFilter(radius), but filters stripes of rows on pool.
+		If pool is null, we use the common pool.
+	*/
+	public PlanetMap boxFilter(int radius, ForkJoinPool pool) {
+		final PlanetMap result = new PlanetMap(this.width, this.height);
+		final int r = radius < 0 ? 0 : radius;
+		final int size = 2 * r + 1;
+
+		ParallelRange.run(pool, 0, this.height, POINTS_PER_STRIPE / this.width, (start, end) -> {
+			for(int y = start; y < end; ++y) {
+				for(int x = 0; x < this.width; ++x)
+					result.setData(x, y, (float)getMean(x - r, y - r, size, size));
+			}
+		});
+
+		return result;
+	}
+
+	/*
+		Returns the sum of every point (i, j) where i < x and j < y of the map
+		tiled infinitely in every direction, starting from (0, 0). We break x
+		into some number of whole map widths plus a remainder, and do the same
+		for y. Each whole map adds the sum of the entire map, each whole width
+		adds the sum of a full-width strip, and so on.
+	*/
+	private double getPrefixSum(long x, long y) {
+		long qx = Math.floorDiv(x, (long)this.width);
+		long qy = Math.floorDiv(y, (long)this.height);
+		int rx = (int)Math.floorMod(x, (long)this.width);
+		int ry = (int)Math.floorMod(y, (long)this.height);
+
+		return qx * qy * getEntry(this.width, this.height)
+			 + qx * getEntry(this.width, ry)
+			 + qy * getEntry(rx, this.height)
+			 + getEntry(rx, ry);
+	}
+
+	/*
+		Returns entry (x, y) of the table, where 0 <= x <= width and 0 <= y <= height.
+	*/
+	private double getEntry(int x, int y) {
+		return this.table[y * (this.width + 1) + x];
+	}
+}
@@ -0,0 +1,158 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	The Vector API implementation of MapKernels. Each loop works on as many
+	floats at once as the machine's preferred vector holds, and finishes
+	whatever is left over one float at a time.
+
+	This class needs the jdk.incubator.vector module, so only MapKernels
+	should ever load it.
+*/
+
+package ulysses.planet.utilities;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+class VectorMapKernels extends MapKernels {
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	// Used for whatever is left over at the end of each loop.
+	private final ScalarMapKernels scalar = new ScalarMapKernels();
+
+	String getName() {
+		return "vector (" + SPECIES.length() + " floats)";
+	}
+
+	void square(float[] a, int from, int to) {
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+		FloatVector v;
+
+		for(; i < bound; i += SPECIES.length()) {
+			v = FloatVector.fromArray(SPECIES, a, i);
+			v.mul(v).intoArray(a, i);
+		}
+
+		this.scalar.square(a, i, to);
+	}
+
+	void square(float[] dst, float[] src, int from, int to) {
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+		FloatVector v;
+
+		for(; i < bound; i += SPECIES.length()) {
+			v = FloatVector.fromArray(SPECIES, src, i);
+			v.mul(v).intoArray(dst, i);
+		}
+
+		this.scalar.square(dst, src, i, to);
+	}
+
+	void addSquare(float[] dst, float[] src, int from, int to) {
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+		FloatVector v;
+
+		for(; i < bound; i += SPECIES.length()) {
+			v = FloatVector.fromArray(SPECIES, src, i);
+			FloatVector.fromArray(SPECIES, dst, i).add(v.mul(v)).intoArray(dst, i);
+		}
+
+		this.scalar.addSquare(dst, src, i, to);
+	}
+
+	void add(float[] dst, float[] src, int from, int to) {
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+
+		for(; i < bound; i += SPECIES.length()) {
+			FloatVector.fromArray(SPECIES, dst, i)
+					   .add(FloatVector.fromArray(SPECIES, src, i))
+					   .intoArray(dst, i);
+		}
+
+		this.scalar.add(dst, src, i, to);
+	}
+
+	void sqrt(float[] a, int from, int to) {
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+
+		for(; i < bound; i += SPECIES.length())
+			FloatVector.fromArray(SPECIES, a, i).sqrt().intoArray(a, i);
+
+		this.scalar.sqrt(a, i, to);
+	}
+
+	void scale(float[] a, float scalar, int from, int to) {
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+
+		for(; i < bound; i += SPECIES.length())
+			FloatVector.fromArray(SPECIES, a, i).mul(scalar).intoArray(a, i);
+
+		this.scalar.scale(a, scalar, i, to);
+	}
+
+	void normalize(float[] a, float min, float maxDist, int from, int to) {
+		if(maxDist == 0.0f) {
+			Arrays.fill(a, from, to, 0.0f);
+			return;
+		}
+
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+
+		for(; i < bound; i += SPECIES.length())
+			FloatVector.fromArray(SPECIES, a, i).sub(min).div(maxDist).intoArray(a, i);
+
+		this.scalar.normalize(a, min, maxDist, i, to);
+	}
+
+	float min(float[] a, int from, int to) {
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+		float result;
+
+		if(bound == from)
+			return this.scalar.min(a, from, to);
+
+		FloatVector v = FloatVector.fromArray(SPECIES, a, i);
+		for(i += SPECIES.length(); i < bound; i += SPECIES.length())
+			v = v.min(FloatVector.fromArray(SPECIES, a, i));
+
+		result = v.reduceLanes(VectorOperators.MIN);
+		if(i < to) {
+			float rest = this.scalar.min(a, i, to);
+			result = rest < result ? rest : result;
+		}
+
+		return result;
+	}
+
+	float max(float[] a, int from, int to) {
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+		float result;
+
+		if(bound == from)
+			return this.scalar.max(a, from, to);
+
+		FloatVector v = FloatVector.fromArray(SPECIES, a, i);
+		for(i += SPECIES.length(); i < bound; i += SPECIES.length())
+			v = v.max(FloatVector.fromArray(SPECIES, a, i));
+
+		result = v.reduceLanes(VectorOperators.MAX);
+		if(i < to) {
+			float rest = this.scalar.max(a, i, to);
+			result = rest > result ? rest : result;
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,217 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Computes the exact Euclidean distance from every point of the world
+	to the closest point of some feature (for example, water). This is
+	an alternative to the approximation in WaterSourcesContainer.
+
+	We use the algorithm by Felzenszwalb and Huttenlocher, described in
+	"Distance Transforms of Sampled Functions". It is separable, so we
+	do it in two passes. First, for every column we find the vertical
+	distance from each point to the closest feature point in that column.
+	Next, for every row we treat each point's squared vertical distance
+	as a parabola, and find the lower envelope of these parabolas. The
+	envelope at x is the squared distance from x to the closest feature.
+	Both passes are linear, so the whole transform is linear in the number
+	of points.
+
+	The world wraps around horizontally, so the row pass does too. We do
+	this by running the row pass over three copies of the row laid side by
+	side, and keeping the result for the middle copy. The world does not
+	wrap vertically, so the column pass does not.
+*/
+
+package ulysses.planet.utilities.generators;
+
+import ulysses.planet.utilities.PlanetMap;
+
+public class DistanceTransform {
+	// Marks a column with no feature points.
+	private static final int NO_FEATURE = -1;
+
+	// The dimensions of the world.
+	private final int width, height;
+
+	public DistanceTransform(int width, int height) {
+		if(width <= 0)
+			width = 256;
+		if(height <= 0)
+			height = 128;
+
+		this.width = width;
+		this.height = height;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/*
+		Computes the distance from every point to the closest feature point.
+
+		ARGUMENTS:
+			isFeature - for each point (indexed by y * width + x), true if
+			the point is a feature point. The distance of a feature point
+			is 0.
+
+		RETURNS:
+			A map of the distance from each point to the closest feature point,
+			or null if isFeature is null or the wrong size. If there are no
+			feature points at all, every distance is 0.
+	*/
+	public PlanetMap computeDistances(boolean[] isFeature) {
+		if(isFeature == null || isFeature.length != this.width * this.height)
+			return null;
+
+		PlanetMap result = new PlanetMap(this.width, this.height);
+		// The vertical distance from each point to the closest feature
+		// in its column, or NO_FEATURE.
+		int[] colDist = new int[this.width * this.height];
+
+		if(!computeColumnDistances(isFeature, colDist))
+			return result;
+
+		computeRowDistances(colDist, result);
+
+		return result;
+	}
+
+	/*
+		Finds, for every point, the distance to the closest feature point
+		in the same column. We sweep each column down and then up, keeping
+		track of the last feature point we saw.
+
+		ARGUMENTS:
+			isFeature - marks the feature points.
+			colDist - where we store the distances.
+
+		RETURNS:
+			true if there is at least one feature point, false otherwise.
+	*/
+	private boolean computeColumnDistances(boolean[] isFeature, int[] colDist) {
+		boolean foundFeature = false;
+		// The row of the last feature point we saw, or NO_FEATURE.
+		int last;
+		int index;
+		int dist;
+
+		for(int x = 0; x < this.width; ++x) {
+			last = NO_FEATURE;
+
+			for(int y = 0; y < this.height; ++y) {
+				index = y * this.width + x;
+
+				if(isFeature[index]) {
+					last = y;
+					foundFeature = true;
+				}
+
+				colDist[index] = last == NO_FEATURE ? NO_FEATURE : y - last;
+			}
+
+			last = NO_FEATURE;
+
+			for(int y = this.height - 1; y >= 0; --y) {
+				index = y * this.width + x;
+
+				if(isFeature[index])
+					last = y;
+				if(last == NO_FEATURE)
+					continue;
+
+				dist = last - y;
+				if(colDist[index] == NO_FEATURE || dist < colDist[index])
+					colDist[index] = dist;
+			}
+		}
+
+		return foundFeature;
+	}
+
+	/*
+		Computes the final distances one row at a time. For each row, every
+		point x with a vertical distance d defines the parabola
+		f(q) = (q - x)^2 + d^2. The squared distance at q is the lowest of
+		these parabolas at q.
+
+		To wrap around, the row is laid out three times, and we only keep
+		the envelope over the middle copy. Any point is less than one width
+		away from its closest feature in the middle copy, so this is exact.
+
+		ARGUMENTS:
+			colDist - the column distances from computeColumnDistances.
+			result - where we store the distances.
+	*/
+	private void computeRowDistances(int[] colDist, PlanetMap result) {
+		int len = 3 * this.width;
+		// The squared vertical distance at each point of the extended row.
+		double[] f = new double[len];
+		// Where each parabola of the lower envelope is located.
+		int[] v = new int[len];
+		// Where each parabola of the lower envelope starts being the lowest.
+		double[] z = new double[len + 1];
+		// The number of parabolas in the envelope, minus one.
+		int k;
+		int d;
+		double s;
+
+		for(int y = 0; y < this.height; ++y) {
+			k = -1;
+
+			for(int q = 0; q < len; ++q) {
+				d = colDist[y * this.width + q % this.width];
+				if(d == NO_FEATURE)
+					continue;
+
+				f[q] = (double)d * d;
+
+				if(k < 0) {
+					k = 0;
+					v[0] = q;
+					z[0] = Double.NEGATIVE_INFINITY;
+					z[1] = Double.POSITIVE_INFINITY;
+					continue;
+				}
+
+				// Remove every parabola that the new one is lower than.
+				s = intersect(f, v[k], q);
+				while(s <= z[k]) {
+					k -= 1;
+					s = intersect(f, v[k], q);
+				}
+
+				k += 1;
+				v[k] = q;
+				z[k] = s;
+				z[k + 1] = Double.POSITIVE_INFINITY;
+			}
+
+			// No column in this row has a feature. This can only
+			// happen when there are no features at all.
+			if(k < 0)
+				continue;
+
+			// Read the envelope over the middle copy of the row.
+			k = 0;
+			for(int q = this.width; q < 2 * this.width; ++q) {
+				while(z[k + 1] < q)
+					k += 1;
+
+				s = (double)(q - v[k]) * (q - v[k]) + f[v[k]];
+				result.setData(q - this.width, y, (float)Math.sqrt(s));
+			}
+		}
+	}
+
+	/*
+		Returns where the parabola at q becomes lower than the parabola at p.
+		Assumes p < q.
+	*/
+	private double intersect(double[] f, int p, int q) {
+		return ((f[q] + (double)q * q) - (f[p] + (double)p * p)) / (2.0 * (q - p));
+	}
+}
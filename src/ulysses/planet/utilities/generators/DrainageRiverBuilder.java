@@ -0,0 +1,540 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Builds rivers by working out where water drains over the whole world,
+	instead of walking each river on its own like RiverBuilder does. We do
+	this in three passes:
+
+	1. Fill every depression with a priority flood. Starting from the coast,
+	   we visit land from lowest to highest, always taking the lowest point
+	   next to what we have visited so far. A point that is lower than the
+	   point we reached it from is in a depression, so we raise it to that
+	   point's height. Now every point of land has a way down to the sea.
+
+	2. Give every point of land a flow direction. Like D8, a point flows to
+	   whichever of its eight neighbors has the steepest drop on the filled
+	   heights. A point with no lower neighbor is on a flat, or was filled,
+	   so it flows to the point the flood reached it from.
+
+	3. Accumulate the flow. Each point gets its own rain, which is its cloud
+	   frequency if we have a cloud frequency map, and 1 if we do not. Then
+	   it passes everything it has to the point it flows to. We visit points
+	   in the reverse of the order the flood took them out of its heap. The
+	   heap gives points from lowest to highest, and a point only ever flows
+	   to a lower point or to the point the flood reached it from, so every
+	   point is done before the point it flows to.
+
+	Every point of land whose flow is at least minFlow is part of a river.
+	We then split these points into rivers, largest first. A river starts
+	where a stream meets the sea or a larger river, and goes upstream along
+	whichever stream carries the most water. Every other stream that joins
+	it becomes a river of its own later on.
+
+	Like RiverBuilder, each river goes downstream from where it begins, and
+	ends with the water it drains into. Also like RiverBuilder, we erode
+	the height map along each river so it never goes uphill towards the sea.
+
+	The flood takes O(N log N) time for N points, and everything else takes
+	O(N), no matter how many rivers there are. The world wraps around
+	horizontally, but not vertically.
+*/
+
+package ulysses.planet.utilities.generators;
+
+import ulysses.planet.Hydrosphere;
+import ulysses.planet.River;
+import ulysses.planet.utilities.PlanetMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class DrainageRiverBuilder {
+	// The x and y offset of each of the eight neighbors of a point.
+	private static final int[] NEIGHBOR_DX = { -1, 1, 0, 0, -1, 1, -1, 1 };
+	private static final int[] NEIGHBOR_DY = { 0, 0, -1, 1, -1, -1, 1, 1 };
+	// The distance to each neighbor. The last four are diagonal.
+	private static final float[] NEIGHBOR_DIST = { 1.0f, 1.0f, 1.0f, 1.0f, 1.4142135f, 1.4142135f, 1.4142135f, 1.4142135f };
+	// What a point of sea flows to. Land that flows nowhere flows to -1.
+	private static final int SEA = -2;
+
+	// The dimensions of the world we are working with.
+	private int width, height;
+
+	// The most rivers we will make.
+	private int numRivers;
+
+	// Represents annual cloud presence at every point. This is how much
+	// rain each point gets. If null, every point gets 1.
+	private PlanetMap cloudFreq;
+
+	// Points at or below this are sea.
+	private float seaLevel;
+
+	// The least flow a point needs to be part of a river.
+	private float minFlow;
+
+	// The flow of every point from the last time we built rivers.
+	private float[] flow;
+
+	// The min heap we use both for the flood and for choosing rivers.
+	private long[] heap;
+	private int heapSize;
+
+	public DrainageRiverBuilder() {
+		this.width = 128;
+		this.height = 64;
+
+		this.numRivers = 0;
+		this.cloudFreq = null;
+		this.seaLevel = 0.37f;
+		this.minFlow = 256.0f;
+
+		this.flow = null;
+
+		this.heap = new long[64];
+		this.heapSize = 0;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public void setWidth(int val) {
+		if(val <= 0)
+			val = 128;
+
+		this.width = val;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public void setHeight(int val) {
+		if(val <= 0)
+			val = 64;
+
+		this.height = val;
+	}
+
+	public int getNumRivers() {
+		return this.numRivers;
+	}
+
+	public void setNumRivers(int val) {
+		if(val < 0)
+			val = 0;
+
+		this.numRivers = val;
+	}
+
+	public PlanetMap getCloudFrequencyMap() {
+		return this.cloudFreq;
+	}
+
+	public void setCloudFrequencyMap(PlanetMap val) {
+		this.cloudFreq = val;
+	}
+
+	public float getSeaLevel() {
+		return this.seaLevel;
+	}
+
+	public void setSeaLevel(float val) {
+		this.seaLevel = val;
+	}
+
+	public float getMinFlow() {
+		return this.minFlow;
+	}
+
+	public void setMinFlow(float val) {
+		if(val <= 0.0f)
+			val = 256.0f;
+
+		this.minFlow = val;
+	}
+
+	/*
+		Returns the flow of every point from the last time we built rivers, or
+		null if we have not built any, or our dimensions changed since. Sea has
+		no flow.
+	*/
+	public PlanetMap getFlowMap() {
+		if(this.flow == null || this.flow.length != this.width * this.height)
+			return null;
+
+		PlanetMap result = new PlanetMap(this.width, this.height);
+
+		for(int i = 0; i < this.flow.length; ++i)
+			result.setData(i, this.flow[i]);
+
+		return result;
+	}
+
+	/*
+		Generates the rivers for the hydrosphere. We set the number of rivers of
+		hydro to the number we make, which is at most numRivers. This operation
+		will do nothing if hydro or heightmap are null, or numRivers is 0.
+
+		ARGUMENTS:
+			hydro - where to store resulting rivers.
+			heightmap - the heights of the world. Rivers erode it.
+	*/
+	public void generateRivers(Hydrosphere hydro, PlanetMap heightmap) {
+		// Whatever happens, the flow of the last time is no longer right.
+		this.flow = null;
+
+		if(hydro == null || heightmap == null)
+			return;
+		if(this.numRivers < 1)
+			return;
+
+		int len = this.width * this.height;
+		// The point each point flows to. Sea is SEA, and land that flows nowhere is -1.
+		int[] next = new int[len];
+		// Every point of land in the order the flood took it.
+		int[] order = new int[len];
+		int numLand;
+		ArrayList<River> rivers;
+
+		numLand = fillAndRoute(heightmap, next, order);
+		accumulate(next, order, numLand);
+		rivers = extractRivers(heightmap, next);
+
+		if(rivers.isEmpty())
+			return;
+
+		hydro.setNumRivers(rivers.size());
+		for(int i = 0; i < rivers.size(); ++i)
+			hydro.setRiver(i, rivers.get(i));
+	}
+
+	/*
+		Fills depressions with a priority flood and gives every point of land the
+		point it flows to. Sea points next to land start the flood. If some land
+		cannot reach the sea, like when there is no sea at all, its lowest point
+		is made to flow nowhere and starts the flood too.
+
+		ARGUMENTS:
+			heightmap - the heights of the world. We do not change it.
+			next - where we store the point each point flows to.
+			order - where we store every point of land in the order we took it out
+			of the heap.
+
+		RETURNS:
+			the number of points of land.
+	*/
+	private int fillAndRoute(PlanetMap heightmap, int[] next, int[] order) {
+		int len = this.width * this.height;
+		// The height of each point once depressions are filled.
+		float[] filled = new float[len];
+		// True once a point has been put in the heap, or if it is sea.
+		boolean[] closed = new boolean[len];
+		// The number of points of land left to take.
+		int numLeft = 0;
+		int numLand = 0;
+		int curr, n;
+		float currVal;
+
+		for(int i = 0; i < len; ++i) {
+			filled[i] = heightmap.getData(i);
+
+			if(filled[i] <= this.seaLevel) {
+				next[i] = SEA;
+				closed[i] = true;
+			}
+
+			else {
+				next[i] = -1;
+				numLeft += 1;
+			}
+		}
+
+		// Start from every point of sea that touches land.
+		this.heapSize = 0;
+		for(int i = 0; i < len; ++i) {
+			if(filled[i] > this.seaLevel)
+				continue;
+
+			for(int k = 0; k < 8; ++k) {
+				n = getNeighbor(i, k);
+				if(n != -1 && filled[n] > this.seaLevel) {
+					push(PlanetMap.packKey(filled[i], i));
+					break;
+				}
+			}
+		}
+
+		while(this.heapSize > 0 || numLeft > 0) {
+			if(this.heapSize == 0) {
+				curr = findLowestOpen(filled, closed);
+				closed[curr] = true;
+				numLeft -= 1;
+				push(PlanetMap.packKey(filled[curr], curr));
+			}
+
+			curr = PlanetMap.unpackIndex(pop());
+			currVal = filled[curr];
+
+			if(next[curr] != SEA)
+				order[numLand++] = curr;
+
+			for(int k = 0; k < 8; ++k) {
+				n = getNeighbor(curr, k);
+				if(n == -1 || closed[n])
+					continue;
+
+				closed[n] = true;
+				numLeft -= 1;
+
+				// Fill n if it is in a depression.
+				if(filled[n] < currVal)
+					filled[n] = currVal;
+
+				next[n] = curr;
+				push(PlanetMap.packKey(filled[n], n));
+			}
+		}
+
+		this.heapSize = 0;
+
+		// Anything strictly lower came out of the heap earlier, so flowing
+		// down the steepest drop can never make a loop.
+		for(int i = 0; i < numLand; ++i)
+			routeSteepest(order[i], filled, next);
+
+		return numLand;
+	}
+
+	/*
+		If point has a neighbor that is lower on the filled heights, makes it flow
+		to the one with the steepest drop. Otherwise, we leave it flowing to the
+		point the flood reached it from.
+	*/
+	private void routeSteepest(int point, float[] filled, int[] next) {
+		float bestSlope = 0.0f;
+		float slope;
+		int n;
+
+		for(int k = 0; k < 8; ++k) {
+			n = getNeighbor(point, k);
+			if(n == -1)
+				continue;
+
+			slope = (filled[point] - filled[n]) / NEIGHBOR_DIST[k];
+			if(slope > bestSlope) {
+				bestSlope = slope;
+				next[point] = n;
+			}
+		}
+	}
+
+	/*
+		Returns the lowest point of land the flood has not taken. Ties go to the
+		smallest index.
+	*/
+	private int findLowestOpen(float[] filled, boolean[] closed) {
+		int result = -1;
+
+		for(int i = 0; i < filled.length; ++i) {
+			if(!closed[i] && (result == -1 || filled[i] < filled[result]))
+				result = i;
+		}
+
+		return result;
+	}
+
+	/*
+		Computes the flow of every point. We go through the land in the reverse of
+		the order the flood took it, since every point flows to one taken before it.
+		Sea has no flow.
+	*/
+	private void accumulate(int[] next, int[] order, int numLand) {
+		int point;
+
+		this.flow = new float[this.width * this.height];
+
+		for(int i = 0; i < numLand; ++i) {
+			point = order[i];
+			this.flow[point] = this.cloudFreq == null ? 1.0f : this.cloudFreq.getData(point);
+		}
+
+		for(int i = numLand - 1; i >= 0; --i) {
+			point = order[i];
+			if(next[point] >= 0 && next[next[point]] != SEA)
+				this.flow[next[point]] += this.flow[point];
+		}
+	}
+
+	/*
+		Splits the points with enough flow into rivers, and erodes the height map
+		along each. A river starts at a point whose flow enters the sea or a river
+		we already made. We keep these starts in a heap by flow, so the largest
+		rivers are made first.
+
+		RETURNS:
+			the rivers, at most numRivers of them.
+	*/
+	private ArrayList<River> extractRivers(PlanetMap heightmap, int[] next) {
+		ArrayList<River> result = new ArrayList<>();
+		// The points of the river we are making, from the water it drains into
+		// up to where it begins.
+		int[] path = new int[64];
+		int pathSize;
+		int curr, upstream, n;
+
+		this.heapSize = 0;
+
+		// Every river point that flows into the sea, or nowhere, starts a river.
+		for(int i = 0; i < next.length; ++i) {
+			if(isRiver(next, i) && (next[i] == -1 || next[next[i]] == SEA))
+				push(PlanetMap.packKey(-this.flow[i], i));
+		}
+
+		while(this.heapSize > 0 && result.size() < this.numRivers) {
+			curr = PlanetMap.unpackIndex(pop());
+
+			pathSize = 0;
+			if(next[curr] != -1)
+				path[pathSize++] = next[curr];
+
+			while(curr != -1) {
+				if(pathSize == path.length)
+					path = Arrays.copyOf(path, path.length * 2);
+
+				path[pathSize++] = curr;
+				upstream = -1;
+
+				// Go up the stream with the most flow. Every other stream that
+				// joins here will start a river of its own.
+				for(int k = 0; k < 8; ++k) {
+					n = getNeighbor(curr, k);
+					if(n == -1 || next[n] != curr || !isRiver(next, n))
+						continue;
+
+					if(upstream == -1 || this.flow[n] > this.flow[upstream] ||
+					   (this.flow[n] == this.flow[upstream] && n < upstream)) {
+						if(upstream != -1)
+							push(PlanetMap.packKey(-this.flow[upstream], upstream));
+
+						upstream = n;
+					}
+
+					else
+						push(PlanetMap.packKey(-this.flow[n], n));
+				}
+
+				curr = upstream;
+			}
+
+			erode(heightmap, path, pathSize);
+			result.add(toRiver(path, pathSize));
+		}
+
+		this.heapSize = 0;
+
+		return result;
+	}
+
+	/*
+		Lowers each point of a river so it is no higher than the point upstream of it.
+	*/
+	private void erode(PlanetMap heightmap, int[] path, int pathSize) {
+		float upstreamVal = heightmap.getData(path[pathSize - 1]);
+		float val;
+
+		for(int i = pathSize - 2; i >= 0; --i) {
+			val = heightmap.getData(path[i]);
+			if(val > upstreamVal)
+				heightmap.setData(path[i], upstreamVal);
+			else
+				upstreamVal = val;
+		}
+	}
+
+	/*
+		Makes a River from the first pathSize points of path. Path goes upstream,
+		so we insert them in reverse.
+	*/
+	private River toRiver(int[] path, int pathSize) {
+		River result = new River(this.width);
+
+		for(int i = pathSize - 1; i >= 0; --i)
+			result.insertIndex(path[i]);
+
+		result.trimToSize();
+
+		return result;
+	}
+
+	/*
+		Returns true if point is land with enough flow to be part of a river.
+	*/
+	private boolean isRiver(int[] next, int point) {
+		return next[point] != SEA && this.flow[point] >= this.minFlow;
+	}
+
+	/*
+		Returns the k-th of the eight neighbors of point, or -1 if it is off the
+		top or bottom of the world.
+	*/
+	private int getNeighbor(int point, int k) {
+		int x = point % this.width + NEIGHBOR_DX[k];
+		int y = point / this.width + NEIGHBOR_DY[k];
+
+		if(y < 0 || y >= this.height)
+			return -1;
+
+		x = x < 0 ? x + this.width : (x >= this.width ? x - this.width : x);
+
+		return y * this.width + x;
+	}
+
+	/*
+		Adds key to our min heap, growing it if it is full.
+	*/
+	private void push(long key) {
+		int i = this.heapSize;
+		int parent;
+
+		if(this.heapSize == this.heap.length)
+			this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+
+		this.heapSize += 1;
+
+		while(i > 0) {
+			parent = (i - 1) / 2;
+			if(this.heap[parent] <= key)
+				break;
+
+			this.heap[i] = this.heap[parent];
+			i = parent;
+		}
+
+		this.heap[i] = key;
+	}
+
+	/*
+		Removes and returns the smallest key of our min heap.
+	*/
+	private long pop() {
+		long result = this.heap[0];
+		long key = this.heap[--this.heapSize];
+		int i = 0;
+		int child;
+
+		while((child = 2 * i + 1) < this.heapSize) {
+			if(child + 1 < this.heapSize && this.heap[child + 1] < this.heap[child])
+				child += 1;
+			if(key <= this.heap[child])
+				break;
+
+			this.heap[i] = this.heap[child];
+			i = child;
+		}
+
+		this.heap[i] = key;
+
+		return result;
+	}
+}
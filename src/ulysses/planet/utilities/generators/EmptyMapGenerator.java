@@ -14,6 +14,10 @@ public class EmptyMapGenerator extends MapGenerator {
 		super(rand);
 	}
 
+	public EmptyMapGenerator(long seed) {
+		super(seed);
+	}
+
 	public PlanetMap generateMap() {
 		PlanetMap result = new PlanetMap(this.width, this.height);
 
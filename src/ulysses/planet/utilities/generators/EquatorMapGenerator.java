@@ -20,6 +20,12 @@ public class EquatorMapGenerator extends MapGenerator {
 		this.equator = 0;
 	}
 
+	public EquatorMapGenerator(long seed) {
+		super(seed);
+
+		this.equator = 0;
+	}
+
 	public int getEquator() {
 		return this.equator;
 	}
@@ -33,6 +39,10 @@ public class EquatorMapGenerator extends MapGenerator {
 		this.equator = val;
 	}
 
+	protected long combineParameterHash(long result) {
+		return HashRandom.combine(super.combineParameterHash(result), this.equator);
+	}
+
 	public PlanetMap generateMap() {
 		PlanetMap result = new PlanetMap(this.width, this.height);
 		// The distance for each row from the equator.
@@ -0,0 +1,96 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	A counter-based random number generator. Rather than giving the next
+	number of a sequence like java.util.Random does, a HashRandom gives the
+	number for a set of coordinates: a point (x, y), an octave, and a layer.
+	The number is a hash of those coordinates and the seed, so it is always
+	the same for the same seed and coordinates, no matter which numbers were
+	asked for before it.
+
+	This means a generator can compute any point of a map, in any order, on
+	any thread, and still make the same world. The layer keeps different
+	uses of random numbers within a generator apart. For example, a
+	generator might use layer 0 for the positions of things and layer 1
+	for their values.
+
+	The hash is a few rounds of the SplitMix64 finalizer, which mixes every
+	bit of its input into every bit of its output.
+*/
+
+package ulysses.planet.utilities.generators;
+
+public class HashRandom {
+	// An odd constant based on the golden ratio. Used to spread out seeds.
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	// Every number depends on this.
+	private final long seed;
+
+	public HashRandom(long seed) {
+		this.seed = seed;
+	}
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/*
+		Returns 64 random bits for the given coordinates.
+	*/
+	public long nextLong(int x, int y, int octave, int layer) {
+		long h = mix(this.seed + GOLDEN_GAMMA);
+
+		h = mix(h ^ ((x & 0xffffffffL) | ((long)y << 32)));
+		h = mix(h ^ ((octave & 0xffffffffL) | ((long)layer << 32)) ^ GOLDEN_GAMMA);
+
+		return h;
+	}
+
+	/*
+		Returns a random float from 0 (inclusive) to 1 (exclusive) for the
+		given coordinates.
+	*/
+	public float nextFloat(int x, int y, int octave, int layer) {
+		return (nextLong(x, y, octave, layer) >>> 40) * 0x1.0p-24f;
+	}
+
+	/*
+		Returns a random int from 0 (inclusive) to bound (exclusive) for the
+		given coordinates. If bound is less than 1, we return 0.
+	*/
+	public int nextInt(int bound, int x, int y, int octave, int layer) {
+		if(bound < 1)
+			return 0;
+
+		// Scale the top 32 bits to [0, bound) with a multiply rather than a
+		// modulo. The bias this leaves is at most bound / 2^32.
+		return (int)(((nextLong(x, y, octave, layer) >>> 32) * bound) >>> 32);
+	}
+
+	/*
+		Returns a new seed for the given stream. We use this to give each
+		generator of a world its own seed, all from one world seed.
+	*/
+	public long deriveSeed(int stream) {
+		return nextLong(stream, 0, 0, -1);
+	}
+
+	/*
+		Mixes val into hash, and returns the result. We use this to make one hash
+		from many values, like every parameter of a generator.
+	*/
+	public static long combine(long hash, long val) {
+		return mix(hash ^ mix(val + GOLDEN_GAMMA));
+	}
+
+	/*
+		The SplitMix64 finalizer.
+	*/
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+
+		return z ^ (z >>> 31);
+	}
+}
@@ -63,6 +63,17 @@ public class HydrosphereGenerator {
 
 	private RiverBuilder riverBuilder;
 
+	// If true, we build rivers from where water drains over the whole world
+	// with the DrainageRiverBuilder, and numRivers is the most rivers we make.
+	// Otherwise, we walk each river on its own with the RiverBuilder.
+	private boolean drainageRivers;
+	private DrainageRiverBuilder drainageRiverBuilder;
+
+	// If true, we compute the exact distance to water with a
+	// DistanceTransform. Otherwise we use the faster to write, but
+	// slower to run, approximation with WaterSourcesContainer.
+	private boolean exactDistToWater;
+
 	// Used to shuffle the order we check neighbors in getNeighbors
 	private Random rand;
 
@@ -77,6 +88,9 @@ public class HydrosphereGenerator {
 		this.numRivers = 0;
 		this.seaLevel = 0;
 		this.riverBuilder = new RiverBuilder(shuffleSeed);
+		this.drainageRivers = false;
+		this.drainageRiverBuilder = new DrainageRiverBuilder();
+		this.exactDistToWater = false;
 
 		this.rand = new Random(shuffleSeed);
 	}
@@ -154,6 +168,61 @@ public class HydrosphereGenerator {
 		this.seaLevel = val;
 	}
 
+	public boolean getExactDistToWater() {
+		return this.exactDistToWater;
+	}
+
+	public void setExactDistToWater(boolean val) {
+		this.exactDistToWater = val;
+	}
+
+	public boolean getDrainageRivers() {
+		return this.drainageRivers;
+	}
+
+	public void setDrainageRivers(boolean val) {
+		this.drainageRivers = val;
+	}
+
+	/*
+		The least flow a point needs to be part of a river when drainageRivers is true.
+		A point's flow is the cloud frequency of every point that drains through it.
+	*/
+	public float getMinRiverFlow() {
+		return this.drainageRiverBuilder.getMinFlow();
+	}
+
+	public void setMinRiverFlow(float val) {
+		this.drainageRiverBuilder.setMinFlow(val);
+	}
+
+	public boolean getParallelRivers() {
+		return this.riverBuilder.getParallel();
+	}
+
+	/*
+		If true, the RiverBuilder traces batches of rivers at the same time. See
+		RiverBuilder.setParallel. This does nothing when drainageRivers is true.
+	*/
+	public void setParallelRivers(boolean val) {
+		this.riverBuilder.setParallel(val);
+	}
+
+	public long getShuffleSeed() {
+		return this.riverBuilder.getShuffleSeed();
+	}
+
+	/*
+		Generates a hydrosphere by doing each step below in order. A caller that
+		wants to run some steps at the same time, or reuse the result of a step,
+		can call the steps itself instead.
+
+		Note that building rivers erodes the height map we were given.
+
+		RETURNS:
+			A new hydrosphere, or null if the height map or cloud frequency
+			map generator is null.
+	*/
 	public Hydrosphere generateHydrosphere() {
 		if(this.heightMap == null ||
 		   this.cloudFreqMapGenerator == null)
@@ -162,34 +231,92 @@ public class HydrosphereGenerator {
 		}
 
 		// What we will return.
-		Hydrosphere result = new Hydrosphere(this.width, this.height);
+		Hydrosphere result;
 		// Use this to generate the river source map.
 		PlanetMap cloudFreqMap;
 		PlanetMap riverSourceModMap;
-		// Use this to generate rivers.
-		PlanetMap riverSourceMap;
 		// A map to compute the distance from the equator.
 		PlanetMap equatorDistMap;
-		// A map that stores the approxixmate distance to a
-		// source of water.
-		PlanetMap waterSourceDistMap;
 
-		// Set the properties of each generator.
+		cloudFreqMap = generateCloudFreqMap();
+		equatorDistMap = generateEquatorMap();
+		riverSourceModMap = generateRiverSourceModifierMap();
+
+		result = generateRivers(this.heightMap, cloudFreqMap, riverSourceModMap);
+
+		result.setCloudFreqMap(cloudFreqMap);
+		result.setEquatorMap(equatorDistMap);
+		result.setApproxDistToWaterMap(generateDistToWater(this.heightMap, result.getRiverMap()));
+
+		return result;
+	}
+
+	/*
+		Generates the cloud frequency map at our dimensions.
+
+		RETURNS:
+			the map, or null if we have no cloud frequency map generator.
+	*/
+	public PlanetMap generateCloudFreqMap() {
+		return generateMap(this.cloudFreqMapGenerator);
+	}
+
+	/*
+		Generates the equator map at our dimensions.
+
+		RETURNS:
+			the map, or null if we have no equator map generator.
+	*/
+	public PlanetMap generateEquatorMap() {
+		return generateMap(this.equatorMapGenerator);
+	}
+
+	/*
+		Generates the river source modifier map at our dimensions.
+
+		RETURNS:
+			the map, or null if we have no river source modifier map generator.
+	*/
+	public PlanetMap generateRiverSourceModifierMap() {
+		return generateMap(this.riverSourceModiferMap);
+	}
 
-		this.cloudFreqMapGenerator.setWidth(this.width);
-		this.cloudFreqMapGenerator.setHeight(this.height);
+	/*
+		Builds our rivers with the RiverBuilder, or the DrainageRiverBuilder if
+		drainageRivers is true. The rivers erode heightMap as they go. Once
+		they are done, we build their river network.
 
-		this.riverSourceModiferMap.setWidth(this.width);
-		this.riverSourceModiferMap.setHeight(this.height);
+		ARGUMENTS:
+			heightMap - the heights of the world. This is eroded.
+			cloudFreqMap - the cloud frequency map.
+			riverSourceModMap - the river source modifier map.
 
-		this.equatorMapGenerator.setWidth(this.width);
-		this.equatorMapGenerator.setHeight(this.height);
+		RETURNS:
+			a new hydrosphere with our rivers, heightMap, and sea level, or null if
+			heightMap is null.
+	*/
+	public Hydrosphere generateRivers(PlanetMap heightMap, PlanetMap cloudFreqMap, PlanetMap riverSourceModMap) {
+		if(heightMap == null)
+			return null;
 
-		// Set hydrosphere properties.
+		Hydrosphere result = new Hydrosphere(this.width, this.height);
 
-		cloudFreqMap = this.cloudFreqMapGenerator.generateMap();
-		equatorDistMap = this.equatorMapGenerator.generateMap();
-		riverSourceModMap = this.riverSourceModiferMap.generateMap();
+		if(this.drainageRivers) {
+			// The drainage builder sets the number of rivers it makes itself.
+			drainageRiverBuilder.setNumRivers(this.numRivers);
+			drainageRiverBuilder.setSeaLevel(this.seaLevel);
+			drainageRiverBuilder.setWidth(this.width);
+			drainageRiverBuilder.setHeight(this.height);
+			drainageRiverBuilder.setCloudFrequencyMap(cloudFreqMap);
+			drainageRiverBuilder.generateRivers(result, heightMap);
+			if(result.getNumRivers() > 0)
+				result.buildRiverNetwork(drainageRiverBuilder.getFlowMap());
+
+			result.setHeightMap(heightMap);
+			result.setSeaLevel(this.seaLevel);
+
+			return result;
+		}
 
 		result.setNumRivers(this.numRivers);
 
@@ -201,19 +328,49 @@ public class HydrosphereGenerator {
 		riverBuilder.setCloudFrequencyMap(cloudFreqMap);
 		riverBuilder.setRiverSourceModiferMap(riverSourceModMap);
 		riverBuilder.generateRivers(result, heightMap);
+		result.buildRiverNetwork(null);
 
-		result.setCloudFreqMap(cloudFreqMap);
-		result.setEquatorMap(equatorDistMap);
-
-		result.setHeightMap(this.heightMap);
+		result.setHeightMap(heightMap);
 		result.setSeaLevel(this.seaLevel);
 
-		waterSourceDistMap = computeApproxDistToWaterSource(heightMap, result.getRiverMap());
-		result.setApproxDistToWaterMap(waterSourceDistMap);
-
 		return result;
 	}
 
+	/*
+		Computes how close each point is to water, either exactly or approximately
+		depending on exactDistToWater.
+
+		ARGUMENTS:
+			heightMap - To tell us what points are oceanic.
+			riverMap - To tell us what points are apart of rivers.
+
+		RETURNS:
+			null if heightMap or riverMap are null, or a map where points next to
+			water are 1 and the furthest points from water are 0.
+	*/
+	public PlanetMap generateDistToWater(PlanetMap heightMap, PlanetMap riverMap) {
+		if(this.exactDistToWater)
+			return computeExactDistToWaterSource(heightMap, riverMap);
+		else
+			return computeApproxDistToWaterSource(heightMap, riverMap);
+	}
+
+	/*
+		Sets generator to our dimensions and generates its map.
+
+		RETURNS:
+			the map, or null if generator is null.
+	*/
+	private PlanetMap generateMap(MapGenerator generator) {
+		if(generator == null)
+			return null;
+
+		generator.setWidth(this.width);
+		generator.setHeight(this.height);
+
+		return generator.generateMap();
+	}
+
 	/*
 		Produces a map that approxmates each point's distance to water. We do so by treating the
 		world as a collection of cells. That is, we divide the world into a series of N x N cells.
@@ -290,7 +447,52 @@ public class HydrosphereGenerator {
 			}
 		}
 
-		result = normalizeAboveSeaLevel(heightmap, result);
+		return invertDistToWater(heightmap, result);
+	}
+
+	/*
+		Produces a map of each point's exact distance to water. Unlike
+		computeApproxDistToWaterSource, this measures the distance to the
+		closest water point itself rather than to the average water point of
+		a cell. We use a DistanceTransform, which takes linear time. Like the
+		approximation, we then normalize and invert the distances.
+
+		ARGUMENTS:
+			heightmap - To tell us what points are oceanic.
+			rivermap - To tell us what points are apart of rivers.
+
+		RETURNS:
+			null if the heightmap or rivermap are null, or a planet map that gives us the
+			distance to water.
+	*/
+	private PlanetMap computeExactDistToWaterSource(PlanetMap heightmap, PlanetMap riverMap) {
+		if(heightmap == null || riverMap == null)
+			return null;
+
+		DistanceTransform transform = new DistanceTransform(this.width, this.height);
+		// Marks every point that is water (ocean or river).
+		boolean[] isWater = new boolean[this.width * this.height];
+
+		for(int i = 0; i < isWater.length; ++i)
+			isWater[i] = heightmap.getData(i) <= this.seaLevel || riverMap.getData(i) == 1;
+
+		return invertDistToWater(heightmap, transform.computeDistances(isWater));
+	}
+
+	/*
+		Normalizes a map of distances to water based only on land points, and
+		then inverts it so that points closest to water are 1, and points
+		furthest from water are 0. Oceanic points are set to 0.
+
+		ARGUMENTS:
+			heightmap - To tell us what points are oceanic.
+			dist - the distance to water for each point.
+
+		RETURNS:
+			The normalized and inverted distances.
+	*/
+	private PlanetMap invertDistToWater(PlanetMap heightmap, PlanetMap dist) {
+		PlanetMap result = normalizeAboveSeaLevel(heightmap, dist);
 
 		for(int i = 0; i < this.width * this.height; ++i) {
 			if(heightmap.getData(i) <= this.seaLevel)
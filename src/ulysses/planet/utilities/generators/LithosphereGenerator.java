@@ -7,6 +7,18 @@
 	what these mean in the Lithosphere class. We take these
 	maps and add them to a Lithosphere which we then return
 	to the user.
+
+	The three maps do not depend on each other, so if we have an executor,
+	we generate them at the same time. If we have a seed, each generator is
+	given its own seed derived from ours before it generates its map, so the
+	lithosphere is the same no matter what order the maps finish in.
+
+	We also keep the last map of each generator along with the generator's
+	parameter hash. If a generator's hash has not changed since then, we
+	reuse its map instead of generating it again. So tuning one generator,
+	or the percentages of land and mountains, only regenerates what that
+	change affects. The maps are shared by the lithospheres we return, so do
+	not change them.
 */
 
 package ulysses.planet.utilities.generators;
@@ -15,6 +27,11 @@ import ulysses.planet.utilities.PlanetMap;
 import ulysses.planet.*;
 
 import java.util.Random;
+// For generating the maps at the same time.
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class LithosphereGenerator {
 	// The dimensions of the resulting map.
@@ -32,6 +49,18 @@ public class LithosphereGenerator {
 	private MapGenerator thicknessMapGenerator;
 	private MapGenerator orogenicsMapGenerator;
 
+	// What we generate the maps on. If null, we generate them one at a time.
+	private ExecutorService executor;
+	// If seeded is true, each generator gets a seed derived from this one.
+	private long seed;
+	private boolean seeded;
+
+	// The last map of each generator, the generator's parameter hash when it
+	// made the map, and the plates of the last tectonics map.
+	private PlanetMap[] lastMaps;
+	private long[] lastHashes;
+	private Plates lastPlates;
+
 	public LithosphereGenerator() {
 		this.width = 256;
 		this.height = 128;
@@ -42,6 +71,14 @@ public class LithosphereGenerator {
 		this.tectonicsMapGenerator = null;
 		this.thicknessMapGenerator = null;
 		this.orogenicsMapGenerator = null;
+
+		this.executor = null;
+		this.seed = 0;
+		this.seeded = false;
+
+		this.lastMaps = new PlanetMap[3];
+		this.lastHashes = new long[3];
+		this.lastPlates = null;
 	}
 
 	public int getWidth() {
@@ -112,6 +149,86 @@ public class LithosphereGenerator {
 		this.orogenicsMapGenerator = val;
 	}
 
+	public ExecutorService getExecutor() {
+		return this.executor;
+	}
+
+	/*
+		Sets what we generate the maps on. If val is null, we generate them
+		one at a time on the calling thread.
+	*/
+	public void setExecutor(ExecutorService val) {
+		this.executor = val;
+	}
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	public boolean hasSeed() {
+		return this.seeded;
+	}
+
+	/*
+		Sets our seed. From now on, the tectonics, thickness, and orogenics
+		generators get seeds 0, 1, and 2 derived from val with a HashRandom.
+	*/
+	public void setSeed(long val) {
+		this.seed = val;
+		this.seeded = true;
+	}
+
+	/*
+		Stops giving the generators seeds, so each uses its own.
+	*/
+	public void clearSeed() {
+		this.seeded = false;
+	}
+
+	/*
+		Returns a hash of everything that decides what lithosphere we generate:
+		our percentages, and everything getMapParameterHash hashes.
+	*/
+	public long getParameterHash() {
+		long result = getMapParameterHash();
+
+		result = HashRandom.combine(result, Float.floatToIntBits(this.percentLand));
+		result = HashRandom.combine(result, Float.floatToIntBits(this.percentMountains));
+
+		return result;
+	}
+
+	/*
+		Returns a hash of everything that decides the three maps we generate:
+		our dimensions, seed, and the parameters of each generator. If a generator
+		is null, its hash is 0.
+
+		We hash each generator as it will generate: with our dimensions, and its
+		derived seed if we have a seed. The generators themselves are not changed.
+	*/
+	public long getMapParameterHash() {
+		long result = HashRandom.combine(this.width, this.height);
+
+		result = HashRandom.combine(result, this.seeded ? this.seed : 0);
+		result = HashRandom.combine(result, this.seeded ? 1 : 0);
+		result = HashRandom.combine(result, getParameterHash(this.tectonicsMapGenerator, 0));
+		result = HashRandom.combine(result, getParameterHash(this.thicknessMapGenerator, 1));
+		result = HashRandom.combine(result, getParameterHash(this.orogenicsMapGenerator, 2));
+
+		return result;
+	}
+
+	/*
+		Forgets the last map of each generator, so the next lithosphere generates
+		every map. Call this to free the memory the maps use.
+	*/
+	public void clearCache() {
+		for(int i = 0; i < this.lastMaps.length; ++i)
+			this.lastMaps[i] = null;
+
+		this.lastPlates = null;
+	}
+
 	/*
 		Generates a random lithosphere. It does so by generating the tectonics,
 		thickness, and orogenics maps for a lithosphere, and then returns the result.
@@ -120,8 +237,11 @@ public class LithosphereGenerator {
 		Note that the width and height of the individual generators is overloaded to
 		the values set in this class. This way, all of the maps are of the same size.
 
+		Any map whose generator has not changed since the last lithosphere is reused.
+
 		RETURNS:
-			A new lithosphere, or null if any of the generators are null.
+			A new lithosphere, or null if any of the generators are null, or a
+			generator failed.
 	*/
 	public Lithosphere generateLithosphere() {
 		if(this.tectonicsMapGenerator == null ||
@@ -132,26 +252,200 @@ public class LithosphereGenerator {
 		}
 
 		Lithosphere result = new Lithosphere(this.width, this.height);
+		// The last tectonics map, so we know if we made a new one.
+		PlanetMap lastTectonics = this.lastMaps[0];
 
 		// Set the properties for each map generator
+		prepareGenerators();
 
-		this.tectonicsMapGenerator.setWidth(this.width);
-		this.tectonicsMapGenerator.setHeight(this.height);
-
-		this.thicknessMapGenerator.setWidth(this.width);
-		this.thicknessMapGenerator.setHeight(this.height);
+		PlanetMap[] maps = generateMaps(new MapGenerator[] { this.tectonicsMapGenerator,
+															 this.thicknessMapGenerator,
+															 this.orogenicsMapGenerator });
+		if(maps == null)
+			return null;
 
-		this.orogenicsMapGenerator.setWidth(this.width);
-		this.orogenicsMapGenerator.setHeight(this.height);
+		// Keep the plates the tectonics map came from, if it has them.
+		if(maps[0] != lastTectonics) {
+			if(this.tectonicsMapGenerator instanceof PlateGenerator)
+				this.lastPlates = ((PlateGenerator)this.tectonicsMapGenerator).getPlates();
+			else
+				this.lastPlates = null;
+		}
 
 		// Set our data.
-		result.setTectonicsMap(this.tectonicsMapGenerator.generateMap());
-		result.setThicknessMap(this.thicknessMapGenerator.generateMap());
-		result.setOrogenicMap(this.orogenicsMapGenerator.generateMap());
+		result.setTectonicsMap(maps[0]);
+		result.setThicknessMap(maps[1]);
+		result.setOrogenicMap(maps[2]);
+
+		result.setPlates(this.lastPlates);
 
 		result.setPercentLand(this.percentLand);
 		result.setPercentMountains(this.percentMountains);
 
 		return result;
 	}
+
+	/*
+		Generates the map of each generator, reusing the last map of any generator
+		whose hash has not changed. If we have an executor, we generate them at the
+		same time. However, a generator is not safe to use from two threads at once,
+		so if any generator appears twice, we generate the maps one at a time instead.
+		Since a repeated generator is given a different seed for each map, we also
+		do not reuse any maps then.
+
+		ARGUMENTS:
+			generators - the generator of each map. The index of each generator
+			is the stream we derive its seed from.
+
+		RETURNS:
+			the map of each generator, or null if any failed.
+	*/
+	private PlanetMap[] generateMaps(MapGenerator[] generators) {
+		PlanetMap[] result = new PlanetMap[generators.length];
+		long[] hashes = new long[generators.length];
+		ArrayList<Future<PlanetMap>> futures;
+		boolean repeats = hasRepeats(generators);
+
+		if(repeats)
+			clearCache();
+
+		for(int i = 0; i < generators.length; ++i) {
+			hashes[i] = getParameterHash(generators[i], i);
+
+			if(this.lastMaps[i] != null && this.lastHashes[i] == hashes[i])
+				result[i] = this.lastMaps[i];
+		}
+
+		if(this.executor == null || repeats) {
+			for(int i = 0; i < generators.length; ++i) {
+				if(result[i] == null)
+					result[i] = generateMap(generators[i], i);
+
+				// A generator that fails gives us no map.
+				if(result[i] == null)
+					return null;
+			}
+
+			remember(result, hashes, repeats);
+			return result;
+		}
+
+		futures = new ArrayList<>();
+
+		for(int i = 0; i < generators.length; ++i) {
+			final MapGenerator generator = generators[i];
+			final int stream = i;
+
+			if(result[i] == null)
+				futures.add(this.executor.submit(() -> generateMap(generator, stream)));
+			else
+				futures.add(null);
+		}
+
+		try {
+			for(int i = 0; i < generators.length && result != null; ++i) {
+				if(futures.get(i) != null)
+					result[i] = futures.get(i).get();
+
+				// A generator that fails gives us no map.
+				if(result[i] == null)
+					result = null;
+			}
+		}
+
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result = null;
+		}
+
+		catch(ExecutionException e) {
+			result = null;
+		}
+
+		// If any failed, do not leave the rest running.
+		if(result == null) {
+			for(Future<PlanetMap> future : futures) {
+				if(future != null)
+					future.cancel(true);
+			}
+
+			return null;
+		}
+
+		remember(result, hashes, repeats);
+		return result;
+	}
+
+	/*
+		Keeps each map and the hash of its generator, so we can reuse them next time.
+		We do not keep any maps if a generator repeats.
+	*/
+	private void remember(PlanetMap[] maps, long[] hashes, boolean repeats) {
+		if(repeats)
+			return;
+
+		for(int i = 0; i < maps.length; ++i) {
+			this.lastMaps[i] = maps[i];
+			this.lastHashes[i] = hashes[i];
+		}
+	}
+
+	/*
+		Gives each generator that is not null our dimensions, and its derived seed
+		if we have a seed.
+	*/
+	private void prepareGenerators() {
+		MapGenerator[] generators = { this.tectonicsMapGenerator,
+									  this.thicknessMapGenerator,
+									  this.orogenicsMapGenerator };
+
+		for(int i = 0; i < generators.length; ++i) {
+			if(generators[i] == null)
+				continue;
+
+			generators[i].setWidth(this.width);
+			generators[i].setHeight(this.height);
+
+			if(this.seeded)
+				generators[i].setSeed(new HashRandom(this.seed).deriveSeed(i));
+		}
+	}
+
+	/*
+		Gives generator its derived seed, if we have a seed, then generates its map.
+	*/
+	private PlanetMap generateMap(MapGenerator generator, int stream) {
+		if(this.seeded)
+			generator.setSeed(new HashRandom(this.seed).deriveSeed(stream));
+
+		return generator.generateMap();
+	}
+
+	/*
+		Returns the parameter hash generator will have once it is given our
+		dimensions and, if we have a seed, the seed derived for stream. Returns
+		0 if generator is null.
+	*/
+	private long getParameterHash(MapGenerator generator, int stream) {
+		if(generator == null)
+			return 0;
+
+		long seed = this.seeded ? new HashRandom(this.seed).deriveSeed(stream) : generator.getSeed();
+
+		return generator.getParameterHash(this.width, this.height, seed);
+	}
+
+	/*
+		Returns true if the same generator appears more than once.
+	*/
+	private boolean hasRepeats(MapGenerator[] generators) {
+		for(int i = 0; i < generators.length; ++i) {
+			for(int j = i + 1; j < generators.length; ++j) {
+				if(generators[i] == generators[j])
+					return true;
+			}
+		}
+
+		return false;
+	}
 }
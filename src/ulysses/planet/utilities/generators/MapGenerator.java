@@ -5,6 +5,13 @@
 	PlanetMap generation algorithm. By having this,
 	we can experiment with different generators for
 	generating worlds more easily.
+
+	Each generator has two sources of random numbers. The first is
+	a java.util.Random, which gives numbers in sequence. The second is
+	a HashRandom, which gives a number for each set of coordinates. A
+	generator that only uses the HashRandom makes the same map for the
+	same seed no matter what order it computes its points in, or how
+	many threads it uses. Prefer it for new generators.
 */
 
 package ulysses.planet.utilities.generators;
@@ -15,16 +22,37 @@ import ulysses.planet.utilities.PlanetMap;
 import java.util.Random;
 
 public abstract class MapGenerator {
+	// The tile size we use if given a bad one.
+	public static final int DEFAULT_TILE_SIZE = 64;
+
 	// The dimensions for the map to generate
 	protected int width, height;
 	// Used for choosing random numbers.
 	protected Random rand;
+	// Used for choosing random numbers by coordinate.
+	protected HashRandom hashRand;
 
+	/*
+		Creates a generator that uses rand. The seed of our HashRandom is
+		the next long of rand.
+	*/
 	public MapGenerator(Random rand) {
 		if(rand == null)
 			rand = new Random();
 
 		this.rand = rand;
+		this.hashRand = new HashRandom(this.rand.nextLong());
+
+		this.width = 256;
+		this.height = 128;
+	}
+
+	/*
+		Creates a generator whose random numbers all come from seed.
+	*/
+	public MapGenerator(long seed) {
+		this.rand = new Random(seed);
+		this.hashRand = new HashRandom(seed);
 
 		this.width = 256;
 		this.height = 128;
@@ -63,5 +91,91 @@ public abstract class MapGenerator {
 		this.rand = val;
 	}
 
+	public long getSeed() {
+		return this.hashRand.getSeed();
+	}
+
+	/*
+		Sets both of our random number generators to start from seed.
+	*/
+	public void setSeed(long val) {
+		this.rand = new Random(val);
+		this.hashRand = new HashRandom(val);
+	}
+
 	public abstract PlanetMap generateMap();
+
+	/*
+		Returns a hash of everything that decides what map we generate: our type,
+		dimensions, and seed. Subclasses with more parameters mix them in with
+		combineParameterHash. If two calls give the same hash, generateMap gives
+		the same map, so the result of generateMap can be reused.
+
+		Our java.util.Random cannot be hashed. A generator that uses it does not
+		generate the same map for the same hash.
+	*/
+	public long getParameterHash() {
+		return getParameterHash(this.width, this.height, this.hashRand.getSeed());
+	}
+
+	/*
+		Returns the hash we would have if our dimensions and seed were the given
+		ones, without changing anything.
+	*/
+	public long getParameterHash(int width, int height, long seed) {
+		long result = getClass().getName().hashCode();
+
+		result = HashRandom.combine(result, width);
+		result = HashRandom.combine(result, height);
+		result = HashRandom.combine(result, seed);
+
+		return combineParameterHash(result);
+	}
+
+	/*
+		Mixes the parameters of a subclass into result, the hash of our type,
+		dimensions, and seed. Subclasses with more parameters should override
+		this, and mix their own parameters into super.combineParameterHash(result).
+	*/
+	protected long combineParameterHash(long result) {
+		return result;
+	}
+
+	/*
+		Generates a single square tile of the map. Tile (tileX, tileY) covers the
+		points from (tileX * tileSize, tileY * tileSize) up to, but not including,
+		((tileX + 1) * tileSize, (tileY + 1) * tileSize). Like the rest of the
+		world, points past the edge of the map wrap around, so any tile
+		coordinates are valid.
+
+		By default, we generate the whole map and copy the tile out of it.
+		Generators that can compute a point without the rest of the map should
+		override this to only compute the tile.
+
+		ARGUMENTS:
+			tileX, tileY - the coordinates of the tile, in tiles.
+			tileSize - the width and height of the tile. If this is less than 1,
+			we use DEFAULT_TILE_SIZE.
+
+		RETURNS:
+			a tileSize by tileSize map of the tile.
+	*/
+	public PlanetMap generateTile(int tileX, int tileY, int tileSize) {
+		if(tileSize < 1)
+			tileSize = DEFAULT_TILE_SIZE;
+
+		PlanetMap map = generateMap();
+		PlanetMap result = new PlanetMap(tileSize, tileSize);
+		int startX = tileX * tileSize;
+		int startY = tileY * tileSize;
+
+		for(int y = 0; y < tileSize; ++y) {
+			for(int x = 0; x < tileSize; ++x) {
+				result.setData(x, y, map.getData(Math.floorMod(startX + x, this.width),
+												 Math.floorMod(startY + y, this.height)));
+			}
+		}
+
+		return result;
+	}
 }
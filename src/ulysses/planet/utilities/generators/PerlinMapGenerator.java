@@ -14,10 +14,17 @@
 package ulysses.planet.utilities.generators;
 
 import ulysses.planet.utilities.PlanetMap;
-// For choosing random noise values.
+// For computing stripes of columns at the same time.
+import ulysses.planet.utilities.ParallelRange;
+// For the constructor that takes a java.util.Random.
 import java.util.Random;
 
 public class PerlinMapGenerator extends MapGenerator {
+	// Roughly how many points each thread computes at a time.
+	private static final int POINTS_PER_STRIPE = 16384;
+	// The HashRandom layer of our white noise.
+	private static final int NOISE_LAYER = 0;
+
 	// Describe noise generating fields.
 	// The number of smooth noise maps to combine
 	private int octaveCount;
@@ -31,6 +38,13 @@ public class PerlinMapGenerator extends MapGenerator {
 		this.persistence = 0.75f;
 	}
 
+	public PerlinMapGenerator(long seed) {
+		super(seed);
+
+		this.octaveCount = 8;
+		this.persistence = 0.75f;
+	}
+
 	public int getOctaveCount() {
 		return this.octaveCount;
 	}
@@ -55,29 +69,33 @@ public class PerlinMapGenerator extends MapGenerator {
 		this.persistence = val;
 	}
 
+	protected long combineParameterHash(long result) {
+		result = super.combineParameterHash(result);
+
+		result = HashRandom.combine(result, this.octaveCount);
+		result = HashRandom.combine(result, Float.floatToIntBits(this.persistence));
+
+		return result;
+	}
+
 	/*
 		This is the main driver for the map generation procedure.
 		First, it generates random noise. Next, it uses that noise
 		to produce a series of smooth noise maps. Finally, it combines
 		these maps to make a final noise map.
 
+		All of our noise is stored the same way a PlanetMap is: as one
+		array, where point (x, y) is at index y * width + x. So our final
+		noise becomes the result map as is.
+
 		RETURNS:
 			A randomly generated noise map.
 	*/
 	public PlanetMap generateMap() {
-		// What we will return.
-		PlanetMap result = new PlanetMap(this.width, this.height);
 		// Use this to produce final, smooth noise.
-		float[][] baseNoise = generateWhiteNoise();
-		float[][] smoothNoise = getSmoothNoise(baseNoise);
-		// Use this to index into result.
-		int index;
-
-		// Final step, add noise to result.
-		for(int x = 0; x < this.width; ++x) {
-			for(int y = 0; y < this.height; ++y)
-				result.setData(x, y, smoothNoise[x][y]);
-		}
+		float[] baseNoise = generateWhiteNoise();
+		// What we will return.
+		PlanetMap result = new PlanetMap(this.width, this.height, getSmoothNoise(baseNoise));
 
 		result.normalize();
 
@@ -85,54 +103,151 @@ public class PerlinMapGenerator extends MapGenerator {
 	}
 
 	/*
-		Computes the smooth noise from some base noise. First, we compute smooth noise
-		maps for each octave. Then we combine them into our final map.
+		Generates a single tile of noise without generating the rest of the map.
+		See MapGenerator.generateTile. Since our white noise comes from our
+		HashRandom, we can find the white noise at any point directly, and so only
+		need the points each octave samples.
+
+		Before normalizing, each point of the tile is exactly the same as that point
+		of generateMap. However, generateMap normalizes by the smallest and largest
+		values of the whole map, which a tile cannot know. Instead, we divide by the
+		sum of the amplitudes of every octave, which is the largest value the noise
+		could ever have. So tile values are always from 0 to 1, and are the same no
+		matter which tiles are generated, but do not quite reach 0 and 1.
 
 		ARGUMENTS:
-			base - what we calculate the smooth noise from.
+			tileX, tileY - the coordinates of the tile, in tiles.
+			tileSize - the width and height of the tile.
 
 		RETURNS:
-			the smooth noise.
+			a tileSize by tileSize map of noise.
 	*/
-	private float[][] getSmoothNoise(float[][] base) {
-		float[][] result = getEmptyArray();
-		float[][][] smoothMaps = new float[this.octaveCount][][];
-		float amplitude = 1.0f;
+	public PlanetMap generateTile(int tileX, int tileY, int tileSize) {
+		if(tileSize < 1)
+			tileSize = DEFAULT_TILE_SIZE;
+
+		PlanetMap result = new PlanetMap(tileSize, tileSize);
+		float[] amplitudes = getAmplitudes();
+		// The largest value our noise can have.
+		float maxNoise = 0.0f;
+		// The world coordinates of each column and row of the tile.
+		int[] worldX = new int[tileSize];
+		int[] worldY = new int[tileSize];
+		// For each column, the x samples and blend of the current octave.
+		int[] sampX0 = new int[tileSize];
+		int[] sampX1 = new int[tileSize];
+		float[] hBlend = new float[tileSize];
+		int sampY0, sampY1;
+		float vBlend;
+		float top, bot;
+		int period;
+		float freq;
 
-		// Get the smooth noise for each octave
-		for(int i = 0; i < this.octaveCount; ++i)
-			smoothMaps[i] = getSmoothNoise(base, i);
+		for(int o = 0; o < this.octaveCount; ++o)
+			maxNoise += amplitudes[o];
+
+		for(int i = 0; i < tileSize; ++i) {
+			worldX[i] = Math.floorMod(tileX * tileSize + i, this.width);
+			worldY[i] = Math.floorMod(tileY * tileSize + i, this.height);
+		}
 
-		// Blend the noise together.
 		for(int o = this.octaveCount - 1; o >= 0; --o) {
-			amplitude *= this.persistence;
+			period = 1 << o;
+			freq = 1.0f / period;
+
+			for(int x = 0; x < tileSize; ++x) {
+				sampX0[x] = (worldX[x] / period) * period;
+				sampX1[x] = (sampX0[x] + period) % this.width;
+				hBlend[x] = (worldX[x] - sampX0[x]) * freq;
+			}
 
-			for(int x = 0; x < this.width; ++x) {
-				for(int y = 0; y < this.height; ++y)
-					result[x][y] += smoothMaps[o][x][y] * amplitude;
+			for(int y = 0; y < tileSize; ++y) {
+				sampY0 = (worldY[y] / period) * period;
+				sampY1 = (sampY0 + period) % this.height;
+				vBlend = (worldY[y] - sampY0) * freq;
+
+				for(int x = 0; x < tileSize; ++x) {
+					top = interp(getWhiteNoise(sampX0[x], sampY0),
+								 getWhiteNoise(sampX1[x], sampY0),
+								 hBlend[x]);
+					bot = interp(getWhiteNoise(sampX0[x], sampY1),
+								 getWhiteNoise(sampX1[x], sampY1),
+								 hBlend[x]);
+
+					result.setData(x, y, result.getData(x, y) + interp(top, bot, vBlend) * amplitudes[o]);
+				}
 			}
 		}
 
+		result.scaleBy(1.0f / maxNoise);
+
 		return result;
 	}
 
 	/*
-		Computes the smooth noise from base noise at a given octave. We do
-		so by going through each point (x*2^k, y*2^k) for every (x, y) and
-		interpolating the points.
+		Returns the amplitude of each octave. The last octave has an amplitude
+		of persistence, the one before it persistence^2, and so on.
+	*/
+	private float[] getAmplitudes() {
+		float[] result = new float[this.octaveCount];
+		float amplitude = 1.0f;
+
+		for(int o = this.octaveCount - 1; o >= 0; --o) {
+			amplitude *= this.persistence;
+			result[o] = amplitude;
+		}
+
+		return result;
+	}
+
+	/*
+		Computes the smooth noise from some base noise. For each point, we compute
+		the smooth noise of every octave and blend them together with the amplitude
+		of that octave.
+
+		We split the rows of the map into stripes, and compute the stripes at the
+		same time. Within a stripe, each row goes through every octave, from the
+		last to the first, before moving on. This way, no smooth noise map for an
+		octave is ever stored, and every point adds its octaves up in the same order
+		no matter how many threads there are. Changing that order would change the
+		result, since adding floats in a different order rounds differently.
 
 		ARGUMENTS:
-			baseNoise - the noise to smooth.
-			octave - computes our period and frequency, which are then
-			used to interpolate our points.
+			base - what we calculate the smooth noise from.
 
 		RETURNS:
-			Smooth noise.
+			the smooth noise.
 	*/
-	private float[][] getSmoothNoise(float[][] baseNoise, int octave) {
-		// What we will return.
-		float[][] result = getEmptyArray();
+	private float[] getSmoothNoise(final float[] base) {
+		final float[] result = new float[this.width * this.height];
+		// The amplitude of each octave.
+		final float[] amplitudes = getAmplitudes();
+
+		ParallelRange.run(null, 0, this.height, POINTS_PER_STRIPE / this.width, (start, end) -> {
+			for(int y = start; y < end; ++y) {
+				// Blend the noise together.
+				for(int o = this.octaveCount - 1; o >= 0; --o)
+					addSmoothNoise(base, o, amplitudes[o], y, result);
+			}
+		});
+
+		return result;
+	}
+
+	/*
+		Computes the smooth noise from base noise at a given octave for row y, and
+		adds it to the row times amplitude. We do so by going through each point
+		(x*2^k, y*2^k) for every (x, y) and interpolating the points.
 
+		ARGUMENTS:
+			baseNoise - the noise to smooth.
+			octave - computes our period and frequency, which are then
+			used to interpolate our points.
+			amplitude - how much the octave adds to the result.
+			y - the row to compute.
+			result - where we add the smooth noise of row y.
+	*/
+	private void addSmoothNoise(float[] baseNoise, int octave, float amplitude, int y, float[] result) {
 		// Stores 2^k. k is the currenct octave.
 		int period = 1 << octave;
 		float freq = 1.0f / period;
@@ -142,29 +257,31 @@ public class PerlinMapGenerator extends MapGenerator {
 		int sampY0, sampY1;
 		float hBlend, vBlend;
 		float top, bot;
+		// The start of each row we need.
+		int row0, row1, row;
+
+		sampY0 = (y / period) * period;
+		sampY1 = (sampY0 + period) % this.height;
+		vBlend = (y - sampY0) * freq;
+
+		row0 = sampY0 * this.width;
+		row1 = sampY1 * this.width;
+		row = y * this.width;
 
 		for(int x = 0; x < this.width; ++x) {
 			sampX0 = (x / period) * period;
 			sampX1 = (sampX0 + period) % this.width;
 			hBlend = (x - sampX0) * freq;
 
-			for(int y = 0; y < this.height; ++y) {
-				sampY0 = (y / period) * period;
-				sampY1 = (sampY0 + period) % height;
-				vBlend = (y - sampY0) * freq;
+			top = interp(baseNoise[row0 + sampX0],
+						 baseNoise[row0 + sampX1],
+						 hBlend);
+			bot = interp(baseNoise[row1 + sampX0],
+						 baseNoise[row1 + sampX1],
+						 hBlend);
 
-				top = interp(baseNoise[sampX0][sampY0],
-							 baseNoise[sampX1][sampY0],
-							 hBlend);
-				bot = interp(baseNoise[sampX0][sampY1],
-							 baseNoise[sampX1][sampY1],
-							 hBlend);
-
-				result[x][y] = interp(top, bot, vBlend);
-			}
+			result[row + x] += interp(top, bot, vBlend) * amplitude;
 		}
-
-		return result;
 	}
 
 	/*
@@ -176,34 +293,31 @@ public class PerlinMapGenerator extends MapGenerator {
 
 	/*
 		Generates the base noise from which our smooth noise arrays will come from.
-		We create width by height noise map, and use a random number generator to get
-		values from 0 to 1.
+		We create width by height noise map, and use our HashRandom to get values
+		from 0 to 1. Since each point's value only depends on the seed and the point,
+		we fill stripes of rows at the same time.
 
 		RETURNS:
-			a 2D map of random floats between 0 and 1.
+			a 2D map of random floats between 0 and 1, stored as y * width + x.
 	*/
-	private float[][] generateWhiteNoise() {
+	private float[] generateWhiteNoise() {
 		// What we will return.
-		float[][] result = new float[this.width][];
+		final float[] result = new float[this.width * this.height];
 
-		for(int x = 0; x < this.width; ++x) {
-			result[x] = new float[this.height];
-			for(int y = 0; y < this.height; ++y)
-				result[x][y] = (float)rand.nextDouble();
-		}
+		ParallelRange.run(null, 0, this.height, POINTS_PER_STRIPE / this.width, (start, end) -> {
+			for(int y = start; y < end; ++y) {
+				for(int x = 0; x < this.width; ++x)
+					result[y * this.width + x] = getWhiteNoise(x, y);
+			}
+		});
 
 		return result;
 	}
 
 	/*
-		Creates a width x height empty array (array of zeroes).
+		Returns the white noise at point (x, y).
 	*/
-	private float[][] getEmptyArray() {
-		float[][] result = new float[this.width][];
-
-		for(int x = 0; x < this.width; ++x)
-			result[x] = new float[this.height];
-
-		return result;
+	private float getWhiteNoise(int x, int y) {
+		return this.hashRand.nextFloat(x, y, 0, NOISE_LAYER);
 	}
 }
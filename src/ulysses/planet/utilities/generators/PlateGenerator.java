@@ -0,0 +1,20 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	A PlateGenerator is a MapGenerator that divides the world into tectonic
+	plates. Besides the map itself, it keeps the plates of the last map it
+	generated, so that the LithosphereGenerator can give them to the
+	Lithosphere.
+*/
+
+package ulysses.planet.utilities.generators;
+
+import ulysses.planet.Plates;
+
+public interface PlateGenerator {
+	/*
+		Returns the plates of the last map we generated, or null if we have
+		not generated one yet.
+	*/
+	Plates getPlates();
+}
@@ -4,6 +4,22 @@
 	This class exists as an attempt to refactor the monster
 	that is the HydrosphereGenerator. Essentially, we take the
 	logic of building rivers and move it here.
+
+	Each river merges into the rivers before it and erodes the height map
+	that the rivers after it walk on, so normally we build them one at a
+	time. If parallel is true, we instead trace a batch of rivers at the
+	same time with RiverTracers, and then go through the batch in order of
+	rank. A river whose trace read a point that an earlier river of the batch
+	changed is traced again, now that the earlier river is done. Then its
+	changes are made. So every river sees exactly what it would have seen
+	if the rivers were built one at a time.
+
+	The one difference in parallel is how ties between equally good
+	neighbors are broken. One java.util.Random shared by every river would
+	make each river depend on how many choices the rivers before it made,
+	so instead each choice uses a HashRandom keyed on the river's rank and
+	the number of choices it made so far. So the rivers are the same no
+	matter how many threads run, but not the same as when parallel is false.
 */
 
 package ulysses.planet.utilities.generators;
@@ -11,14 +27,15 @@ package ulysses.planet.utilities.generators;
 import ulysses.planet.Hydrosphere;
 import ulysses.planet.River;
 import ulysses.planet.utilities.PlanetMap;
+import ulysses.planet.utilities.MapExpression;
+import ulysses.planet.utilities.ParallelRange;
 import java.util.Random;
-import java.util.Stack;
-import java.util.HashMap;
-import java.util.ArrayList;
-import java.awt.Point;
-import java.awt.geom.Point2D;
+import java.util.concurrent.ForkJoinPool;
+import java.util.Arrays;
 
 public class RiverBuilder {
+	// The number of rivers we trace at the same time when we are parallel.
+	private static final int RIVERS_PER_BATCH = 64;
 
 	// When choosing neighbors of a given point,
 	// we want the behavior to be random. We use these
@@ -43,6 +60,22 @@ public class RiverBuilder {
 	// ocean to thus end the process.
 	private float seaLevel;
 
+	// Shared by every river we build. A point has been visited by the current
+	// river if its entry in visitedEpoch is epoch. parents[p] is the point we
+	// came to p from, which is only meaningful if p has been visited.
+	private int[] visitedEpoch;
+	private int[] parents;
+	private int epoch;
+	// The points left to visit, and how many there are.
+	private int[] stack;
+	private int stackSize;
+	// The unvisited neighbors of the current point. There are at most four.
+	private int[] neighbors;
+
+	// If true, we trace batches of rivers at the same time on pool.
+	private boolean parallel;
+	private ForkJoinPool pool;
+
 	public RiverBuilder(long shuffleSeed) {
 		this.shuffleSeed = shuffleSeed;
 		this.rand = new Random(this.shuffleSeed);
@@ -56,6 +89,16 @@ public class RiverBuilder {
 		this.riverSourceModifier = null;
 
 		this.seaLevel = 0.37f;
+
+		this.visitedEpoch = null;
+		this.parents = null;
+		this.epoch = 0;
+		this.stack = new int[16];
+		this.stackSize = 0;
+		this.neighbors = new int[4];
+
+		this.parallel = false;
+		this.pool = ForkJoinPool.commonPool();
 	}
 
 	public long getShuffleSeed() {
@@ -84,6 +127,30 @@ public class RiverBuilder {
 		this.height = val;
 	}
 
+	public boolean getParallel() {
+		return this.parallel;
+	}
+
+	/*
+		If true, we trace batches of rivers at the same time. This breaks ties
+		differently, so the rivers are not the same as when val is false, but
+		they are the same no matter how many threads run.
+	*/
+	public void setParallel(boolean val) {
+		this.parallel = val;
+	}
+
+	public ForkJoinPool getPool() {
+		return this.pool;
+	}
+
+	public void setPool(ForkJoinPool val) {
+		if(val == null)
+			val = ForkJoinPool.commonPool();
+
+		this.pool = val;
+	}
+
 	public int getNumRivers() {
 		return this.numRivers;
 	}
@@ -137,33 +204,78 @@ public class RiverBuilder {
 		if(this.numRivers < 1)
 			return;
 
+		// Start our random numbers over, so the same inputs always give the same rivers.
+		this.rand = new Random(this.shuffleSeed);
+
 		// A map of the most likely spawn points for rivers.
 		PlanetMap riverSourceMap = computeRiverSourceMap(heightmap);
 
-		// Easy access to the source points for rivers.
-		Point2D.Float[] sources = riverSourceMap.getSortedPoints();
+		// The best source points for rivers, best first.
+		int[] sources = riverSourceMap.getTopIndices(this.numRivers);
 		// The next river to add.
 		River river;
-		// Easy access sources array.
-		int index;
-		// Used to conveniently access our source point.
-		Point source;
-
-		for(int i = 0; i < this.numRivers; ++i) {
-			// Grab the next available point from the bottom of the list.
-			index = (sources.length - 1) - i;
-			// A 2D point to 1D is i = y * width + x.
-			// The opposite is x = i % width, y = i / width.
-			source = new Point((int)sources[index].getX() % this.width,
-							   (int)sources[index].getX() / this.width);
-
-			river = new River();
-			buildRiver(river, source, heightmap, hydro);
+
+		if(this.parallel) {
+			generateRiversInBatches(hydro, heightmap, sources);
+			return;
+		}
+
+		for(int i = 0; i < sources.length; ++i) {
+			river = new River(this.width);
+			buildRiver(river, sources[i], heightmap, hydro);
+			river.trimToSize();
 
 			hydro.setRiver(i, river);
 		}
 	}
 
+	/*
+		Builds the river from each source, tracing up to RIVERS_PER_BATCH of them
+		at the same time. Once a batch is traced, we go through it in order. If a
+		river read a point that an earlier river of the batch wrote to, we trace it
+		again, which now sees the earlier river. Then we make its changes.
+
+		The batches do not depend on the number of threads, and every river is
+		finally traced against exactly the rivers before it, so the result is the
+		same no matter how many threads run.
+
+		ARGUMENTS:
+			hydro - where to store resulting rivers.
+			heightmap - used to choose points for building rivers. Rivers erode it.
+			sources - the source of each river, in order of rank.
+	*/
+	private void generateRiversInBatches(Hydrosphere hydro, PlanetMap heightmap, int[] sources) {
+		HashRandom tieRand = new HashRandom(this.shuffleSeed);
+		RiverTracer[] tracers = new RiverTracer[Math.min(RIVERS_PER_BATCH, sources.length)];
+		// The batch that last wrote to each point. Batches are numbered from 1,
+		// so 0 means no batch has.
+		int[] written = new int[this.width * this.height];
+		int stamp = 0;
+
+		for(int i = 0; i < tracers.length; ++i)
+			tracers[i] = new RiverTracer(this.width, this.height, this.seaLevel, tieRand);
+
+		for(int start = 0; start < sources.length; start += RIVERS_PER_BATCH) {
+			final int first = start;
+			int count = Math.min(RIVERS_PER_BATCH, sources.length - start);
+
+			// Nothing changes while we trace, so every tracer only reads.
+			ParallelRange.run(this.pool, 0, count, 1, (lo, hi) -> {
+				for(int j = lo; j < hi; ++j)
+					tracers[j].trace(first + j, sources[first + j], heightmap, hydro);
+			});
+
+			stamp += 1;
+
+			for(int j = 0; j < count; ++j) {
+				if(tracers[j].readsAny(written, stamp))
+					tracers[j].trace(start + j, sources[start + j], heightmap, hydro);
+
+				tracers[j].commit(start + j, heightmap, hydro, written, stamp);
+			}
+		}
+	}
+
 	/*
 		Combines the heightmap, cloudFreq map, and river source modifier map
 		to produce a map that tells us how well each point fits the conditions
@@ -178,17 +290,12 @@ public class RiverBuilder {
 	*/
 	private PlanetMap computeRiverSourceMap(PlanetMap heightMap) {
 		PlanetMap[] p = new PlanetMap[] { this.cloudFreq, this.riverSourceModifier };
-		PlanetMap riverSourceMap = heightMap.combineWith(p);
-
-		for(int i = 0; i < this.width * this.height; ++i) {
-			if(heightMap.getData(i) <= this.seaLevel)
-				riverSourceMap.setData(i, 0.0f);
-		}
-
-		riverSourceMap.sqrt();
-		riverSourceMap.normalize();
+		// Points at or below sea level can never be a source.
+		MapExpression riverSourceMap = MapExpression.sumOfSquares(heightMap, p)
+													.replaceWhere(heightMap, this.seaLevel, 0.0f)
+													.sqrt();
 
-		return riverSourceMap;
+		return riverSourceMap.evaluateNormalized();
 	}
 
 	/*
@@ -199,106 +306,142 @@ public class RiverBuilder {
 		select the "best" neighbor. This involves examining its height, is it river/ocean,
 		etc.
 
+		Points are stored as y * width + x. Rather than allocate a visited array
+		for every river, we share visitedEpoch and parents between rivers. Each
+		river gets a new epoch, and a point is visited by this river only if its
+		entry in visitedEpoch is that epoch. So the cost of a river depends only
+		on how long it is, and not on the size of the world.
+
 		ARGUMENTS:
 			river - Where we store the resulting river.
+			source - the index of the point the river begins at.
 			heightmap - Used to examine the height of every point
 			hydro - used to check for points that are apart of other rivers.
 
 		RETURNS:
 			A single, randomly generated river.
 	*/
-	private void buildRiver(River river, Point source, PlanetMap heightmap, Hydrosphere hydro) {
-		// Stores unvisited points.
-		Stack<Point> stack = new Stack<Point>();
-		// Stores parent relationship. Used to build rivers.
-		HashMap<Point, Point> parent = new HashMap<Point, Point>();	
-		// Marks points as visited.
-		boolean[] visited = new boolean[this.width * this.height];
+	private void buildRiver(River river, int source, PlanetMap heightmap, Hydrosphere hydro) {
 		// Manages our current point.
-		Point curr;
+		int curr;
 		// The point to visit next.
-		Point next;
-		// When building the river, use this to examine the point
-		// before curr
-		Point prev;
+		int next;
 		// Use these for errosion
 		float currVal, nextVal;
-		// Manages the neighbors of curr.
-		ArrayList<Point> neighbors;
+		// The number of unvisited neighbors of curr.
+		int numNeighbors;
+
+		beginEpoch();
 
-		stack.push(source);
-		visited[(int)source.getY() * this.width + (int)source.getX()] = true;
+		this.stackSize = 0;
+		push(source);
+		this.visitedEpoch[source] = this.epoch;
 
-		while(!stack.empty()) {
-			curr = stack.pop();
-			currVal = heightmap.getData((int)curr.getX(), (int)curr.getY());
+		while(this.stackSize > 0) {
+			curr = this.stack[--this.stackSize];
+			currVal = heightmap.getData(curr);
 
 			// Found water!
 			if(currVal <= this.seaLevel || hydro.getRiverOf(curr) != -1) {
-				while(!curr.equals(source)) {
-					river.insertPoint(curr);
-					prev = (Point)parent.get(curr);
-					//prevVal = heightmap.getData((int)prev.getX(), (int)prev.getY());
-
-					// 'Erode' point to be the level of the parent.
-					//if(currVal > prevVal)
-						//heightmap.setData((int)curr.getX(), (int)curr.getY(), prevVal);
-
-					curr = prev;
-				}
-
+				insertPath(river, source, curr);
 				return;
 			}
 
-			neighbors = getNeighbors(curr, visited);
-			if(neighbors.isEmpty())
+			numNeighbors = getNeighbors(curr);
+			if(numNeighbors == 0)
 				continue;
 			else {
-				next = chooseNeighbor(neighbors, heightmap, hydro);
-				stack.push(next);
-				visited[(int)next.getY() * this.width + (int)next.getX()] = true;
-				parent.put(next, curr);
+				next = chooseNeighbor(numNeighbors, heightmap, hydro);
+				push(next);
+				this.visitedEpoch[next] = this.epoch;
+				this.parents[next] = curr;
 
 				// Erode next if needed
-				nextVal = heightmap.getData((int)next.getX(), (int)next.getY());
+				nextVal = heightmap.getData(next);
 				if(nextVal > currVal)
-					heightmap.setData((int)next.getX(), (int)next.getY(), currVal);
+					heightmap.setData(next, currVal);
 			}
 		}
 	}
 
 	/*
-		Gets the set of all unvisited neighbors to expand our river to.
+		Adds the points from just after source down to end to river. We find them
+		by following parents back from end, so we put them on our stack first, and
+		then insert them in the reverse order, from upstream to downstream.
+	*/
+	private void insertPath(River river, int source, int end) {
+		this.stackSize = 0;
+
+		for(int curr = end; curr != source; curr = this.parents[curr])
+			push(curr);
+
+		while(this.stackSize > 0)
+			river.insertIndex(this.stack[--this.stackSize]);
+	}
+
+	/*
+		Makes sure our visited and parent arrays fit the world, and starts a new
+		epoch so that no point counts as visited. If the epoch wraps around, old
+		stamps could look new, so we clear the stamps and start again at 1.
+	*/
+	private void beginEpoch() {
+		int len = this.width * this.height;
+
+		if(this.visitedEpoch == null || this.visitedEpoch.length != len) {
+			this.visitedEpoch = new int[len];
+			this.parents = new int[len];
+			this.epoch = 0;
+		}
+
+		this.epoch += 1;
+
+		if(this.epoch == 0) {
+			Arrays.fill(this.visitedEpoch, 0);
+			this.epoch = 1;
+		}
+	}
+
+	/*
+		Pushes point onto our stack, growing it if it is full.
+	*/
+	private void push(int point) {
+		if(this.stackSize == this.stack.length)
+			this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+
+		this.stack[this.stackSize++] = point;
+	}
+
+	/*
+		Gets the set of all unvisited neighbors to expand our river to. We store
+		them in the first slots of neighbors, in the order left, right, up, down.
 
 		ARGUMENTS:
-			curr - the point to find the neighbors of.
-			visited - tells us if our river building algorithm has already
-			examined the point.
+			curr - the index of the point to find the neighbors of.
 
 		RETURNS:
-			A list containing every unvisited neighbor of curr.
+			The number of unvisited neighbors of curr.
 	*/
-	private ArrayList<Point> getNeighbors(Point curr, boolean[] visited) {
-		ArrayList<Point> result = new ArrayList<Point>();
+	private int getNeighbors(int curr) {
+		int result = 0;
 		int x, y;
 		int l, r, u, d;
 
-		x = (int)curr.getX();
-		y = (int)curr.getY();
+		x = curr % this.width;
+		y = curr / this.width;
 
-		l = (x - 1 % this.width + this.width) % this.width;
-		r = (x + 1 % this.width + this.width) % this.width;
-		u = (y - 1 % this.height + this.height) % this.height;
-		d = (y + 1 % this.height + this.height) % this.height;
+		l = x == 0 ? this.width - 1 : x - 1;
+		r = x == this.width - 1 ? 0 : x + 1;
+		u = y == 0 ? this.height - 1 : y - 1;
+		d = y == this.height - 1 ? 0 : y + 1;
 
-		if(!visited[y * this.width + l])
-			result.add(new Point(l, y));
-		if(!visited[y * this.width + r])
-			result.add(new Point(r, y));
-		if(!visited[u * this.width + x])
-			result.add(new Point(x, u));
-		if(!visited[d * this.width + x])
-			result.add(new Point(x, d));
+		if(this.visitedEpoch[y * this.width + l] != this.epoch)
+			this.neighbors[result++] = y * this.width + l;
+		if(this.visitedEpoch[y * this.width + r] != this.epoch)
+			this.neighbors[result++] = y * this.width + r;
+		if(this.visitedEpoch[u * this.width + x] != this.epoch)
+			this.neighbors[result++] = u * this.width + x;
+		if(this.visitedEpoch[d * this.width + x] != this.epoch)
+			this.neighbors[result++] = d * this.width + x;
 
 		//shuffleNeighbors(result);
 
@@ -310,70 +453,74 @@ public class RiverBuilder {
 		height values and/or ones that are already apart of a river.
 
 		ARGUMENTS:
-			neighbors - The pool of neighbors to select from.
+			numNeighbors - The number of neighbors in our neighbor slots to select from.
 			heightmap - Used to access the height value of each neighbor point.
 			hydro - Tells us which points are apart of a river.
 
 		RETURNS:
 			the best neighbor given our criteria from the neighbors.
 	*/
-	private Point chooseNeighbor(ArrayList<Point> neighbors, PlanetMap heightmap, Hydrosphere hydro) {
-		int result = 0;
-		Point p = (Point)neighbors.get(0);
-		float val = heightmap.getData((int)p.getX(), (int)p.getY());
-		float bestVal = val;
-		ArrayList<Point> bestNeighbors = new ArrayList<Point>();
+	private int chooseNeighbor(int numNeighbors, PlanetMap heightmap, Hydrosphere hydro) {
+		float val;
+		float bestVal = heightmap.getData(this.neighbors[0]);
+		// The number of neighbors that match the best value.
+		int numBest = 0;
+		int choice;
 
 		// Prioritize points already apart of a river
-		for(int i = 0; i < neighbors.size(); ++i) {
-			if(hydro.getRiverOf((Point)neighbors.get(i)) != -1)
-				return (Point)neighbors.get(i);
+		for(int i = 0; i < numNeighbors; ++i) {
+			if(hydro.getRiverOf(this.neighbors[i]) != -1)
+				return this.neighbors[i];
 		}
 
 		// Scan the neighbors to find the best value.
-		for(int i = 0; i < neighbors.size(); ++i) {
-			p = (Point)neighbors.get(i);
-			val = heightmap.getData((int)p.getX(), (int)p.getY());
-			if(val < bestVal) {
+		for(int i = 0; i < numNeighbors; ++i) {
+			val = heightmap.getData(this.neighbors[i]);
+			if(val < bestVal)
 				bestVal = val;
-				result = i;
-			}
 		}
 
-		// If multiple neighbors match the best valued neighbor, add them to a list and
-		// pick a random one.
-		for(int i = 0; i < neighbors.size(); ++i) {
-			p = (Point)neighbors.get(i);
-			val = heightmap.getData((int)p.getX(), (int)p.getY());
-			if(val == bestVal)
-				bestNeighbors.add(p);
+		// If multiple neighbors match the best valued neighbor, pick a random one.
+		for(int i = 0; i < numNeighbors; ++i) {
+			if(heightmap.getData(this.neighbors[i]) == bestVal)
+				numBest += 1;
+		}
+
+		choice = this.rand.nextInt(numBest);
+
+		for(int i = 0; i < numNeighbors; ++i) {
+			if(heightmap.getData(this.neighbors[i]) == bestVal) {
+				if(choice == 0)
+					return this.neighbors[i];
+
+				choice -= 1;
+			}
 		}
 
-		return (Point)bestNeighbors.get(this.rand.nextInt(bestNeighbors.size()));
+		return this.neighbors[0];
 	}
 
 	/*
-		Shuffles the list of neighbors. If this list is < 2 then there is no need to
-		shuffle this list, and we return it as is.
+		Shuffles the first n neighbor slots. If there are < 2 neighbors then there
+		is no need to shuffle them, and we leave them as is.
 
 		ARGUMENTS:
-			neighbors - the unsorted list of neighbors.
+			n - the number of neighbors to shuffle.
 	*/
-	private void shuffleNeighbors(ArrayList<Point> neighbors) {
-		if(neighbors.size() < 2)
+	private void shuffleNeighbors(int n) {
+		if(n < 2)
 			return;
 
 		int i, j;
-		int n = neighbors.size();
-		Point temp;
+		int temp;
 
 		for(int k = 0; k < 100; ++k) {
 			i = this.rand.nextInt(n);
 			j = this.rand.nextInt(n);
-			// Replaces the point at j with the point at i. Stores
-			// point j in temp
-			temp = (Point)neighbors.set(j, (Point)neighbors.get(i));
-			neighbors.set(i, temp);
+			// Swaps the neighbors at i and j.
+			temp = this.neighbors[j];
+			this.neighbors[j] = this.neighbors[i];
+			this.neighbors[i] = temp;
 		}
 	}
 }
@@ -0,0 +1,310 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Traces one river the same way RiverBuilder.buildRiver does, but without
+	changing anything. Instead of eroding the height map and adding the river
+	to the hydrosphere, we remember what we would have done, so that the
+	RiverBuilder can do it later, or throw it away.
+
+	This lets the RiverBuilder trace many rivers at the same time. While the
+	rivers are traced, nothing changes the height map or the hydrosphere, so
+	each tracer only ever reads them. We also remember every point we visited.
+	A river only read the heights and rivers of those points and their
+	neighbors, so if none of them changed since, our trace is still right.
+
+	Everything we keep grows with the length of the river, not with the size
+	of the world, so having a tracer for each river of a batch is cheap.
+
+	When several neighbors are equally good, we choose one with a HashRandom
+	using the rank of the river and the number of choices we made so far.
+	So a river is traced the same way no matter what thread traces it or
+	when.
+*/
+
+package ulysses.planet.utilities.generators;
+
+import ulysses.planet.Hydrosphere;
+import ulysses.planet.River;
+import ulysses.planet.utilities.IntIntHashMap;
+import ulysses.planet.utilities.PlanetMap;
+import java.util.Arrays;
+
+class RiverTracer {
+	// The dimensions of the world we are working with.
+	private int width, height;
+	// Used to check when we have found ocean.
+	private float seaLevel;
+	// Used to choose between equally good neighbors.
+	private HashRandom rand;
+
+	// The point we came to each visited point from. Every point we visited is a key.
+	private IntIntHashMap parents;
+	// Every point we visited, in the order we visited them.
+	private int[] visited;
+	private int numVisited;
+	// The points left to visit, and the height of each when we reached it.
+	private int[] stack;
+	private float[] stackVals;
+	private int stackSize;
+	// The unvisited neighbors of the current point.
+	private int[] neighbors;
+
+	// The points of the river, from the water it reached back up to its source.
+	private int[] path;
+	private int pathSize;
+	// The points we would erode, and what we would lower them to.
+	private int[] eroded;
+	private float[] erodedVals;
+	private int numEroded;
+
+	RiverTracer(int width, int height, float seaLevel, HashRandom rand) {
+		this.width = width;
+		this.height = height;
+		this.seaLevel = seaLevel;
+		this.rand = rand;
+
+		this.parents = new IntIntHashMap();
+		this.visited = new int[64];
+		this.stack = new int[16];
+		this.stackVals = new float[16];
+		this.neighbors = new int[4];
+
+		this.path = new int[64];
+		this.eroded = new int[64];
+		this.erodedVals = new float[64];
+	}
+
+	/*
+		Traces a river from source, forgetting any river we traced before.
+
+		ARGUMENTS:
+			rank - the index of the river. We use it to choose between equally
+			good neighbors.
+			source - the index of the point the river begins at.
+			heightmap - the heights of the world. We do not change it.
+			hydro - used to check for points that are apart of other rivers.
+	*/
+	void trace(int rank, int source, PlanetMap heightmap, Hydrosphere hydro) {
+		// Manages our current point.
+		int curr;
+		// The point to visit next.
+		int next;
+		float currVal, nextVal;
+		int numNeighbors;
+		// The number of times we have chosen a neighbor.
+		int step = 0;
+
+		this.parents.clear();
+		this.numVisited = 0;
+		this.stackSize = 0;
+		this.pathSize = 0;
+		this.numEroded = 0;
+
+		visit(source, -1);
+		push(source, heightmap.getData(source));
+
+		while(this.stackSize > 0) {
+			this.stackSize -= 1;
+			curr = this.stack[this.stackSize];
+			currVal = this.stackVals[this.stackSize];
+
+			// Found water!
+			if(currVal <= this.seaLevel || hydro.getRiverOf(curr) != -1) {
+				while(curr != source) {
+					addToPath(curr);
+					curr = this.parents.get(curr, -1);
+				}
+
+				return;
+			}
+
+			numNeighbors = getNeighbors(curr);
+			if(numNeighbors == 0)
+				continue;
+
+			next = chooseNeighbor(numNeighbors, heightmap, hydro, rank, step);
+			step += 1;
+
+			visit(next, curr);
+
+			// Erode next if needed
+			nextVal = heightmap.getData(next);
+			if(nextVal > currVal) {
+				erode(next, currVal);
+				nextVal = currVal;
+			}
+
+			push(next, nextVal);
+		}
+	}
+
+	/*
+		Returns true if any point we visited, or any neighbor of one, has a value
+		of stamp in written. If not, every height and river we read is the same
+		as when we traced.
+	*/
+	boolean readsAny(int[] written, int stamp) {
+		int point, x, y;
+
+		for(int i = 0; i < this.numVisited; ++i) {
+			point = this.visited[i];
+			x = point % this.width;
+			y = point / this.width;
+
+			if(written[point] == stamp ||
+			   written[y * this.width + (x == 0 ? this.width - 1 : x - 1)] == stamp ||
+			   written[y * this.width + (x == this.width - 1 ? 0 : x + 1)] == stamp ||
+			   written[(y == 0 ? this.height - 1 : y - 1) * this.width + x] == stamp ||
+			   written[(y == this.height - 1 ? 0 : y + 1) * this.width + x] == stamp)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/*
+		Does what we traced: erodes heightmap, and sets the river at rank of hydro.
+		We also set written to stamp at every point we changed.
+	*/
+	void commit(int rank, PlanetMap heightmap, Hydrosphere hydro, int[] written, int stamp) {
+		River river = new River(this.width);
+
+		for(int i = 0; i < this.numEroded; ++i) {
+			heightmap.setData(this.eroded[i], this.erodedVals[i]);
+			written[this.eroded[i]] = stamp;
+		}
+
+		// Our path goes from the water back up to the source, but a river goes downstream.
+		for(int i = this.pathSize - 1; i >= 0; --i) {
+			river.insertIndex(this.path[i]);
+			written[this.path[i]] = stamp;
+		}
+
+		river.trimToSize();
+
+		hydro.setRiver(rank, river);
+	}
+
+	/*
+		Gets the unvisited neighbors of curr in the order left, right, up, down,
+		just like RiverBuilder.
+
+		RETURNS:
+			The number of unvisited neighbors of curr.
+	*/
+	private int getNeighbors(int curr) {
+		int result = 0;
+		int x = curr % this.width;
+		int y = curr / this.width;
+		int l, r, u, d;
+
+		l = x == 0 ? this.width - 1 : x - 1;
+		r = x == this.width - 1 ? 0 : x + 1;
+		u = y == 0 ? this.height - 1 : y - 1;
+		d = y == this.height - 1 ? 0 : y + 1;
+
+		if(!this.parents.containsKey(y * this.width + l))
+			this.neighbors[result++] = y * this.width + l;
+		if(!this.parents.containsKey(y * this.width + r))
+			this.neighbors[result++] = y * this.width + r;
+		if(!this.parents.containsKey(u * this.width + x))
+			this.neighbors[result++] = u * this.width + x;
+		if(!this.parents.containsKey(d * this.width + x))
+			this.neighbors[result++] = d * this.width + x;
+
+		return result;
+	}
+
+	/*
+		Selects the best neighbor just like RiverBuilder, except that ties are
+		broken with our HashRandom.
+	*/
+	private int chooseNeighbor(int numNeighbors, PlanetMap heightmap, Hydrosphere hydro, int rank, int step) {
+		float val;
+		float bestVal = heightmap.getData(this.neighbors[0]);
+		int numBest = 0;
+		int choice;
+
+		// Prioritize points already apart of a river
+		for(int i = 0; i < numNeighbors; ++i) {
+			if(hydro.getRiverOf(this.neighbors[i]) != -1)
+				return this.neighbors[i];
+		}
+
+		for(int i = 0; i < numNeighbors; ++i) {
+			val = heightmap.getData(this.neighbors[i]);
+			if(val < bestVal)
+				bestVal = val;
+		}
+
+		for(int i = 0; i < numNeighbors; ++i) {
+			if(heightmap.getData(this.neighbors[i]) == bestVal)
+				numBest += 1;
+		}
+
+		choice = this.rand.nextInt(numBest, rank, step, 0, 0);
+
+		for(int i = 0; i < numNeighbors; ++i) {
+			if(heightmap.getData(this.neighbors[i]) == bestVal) {
+				if(choice == 0)
+					return this.neighbors[i];
+
+				choice -= 1;
+			}
+		}
+
+		return this.neighbors[0];
+	}
+
+	/*
+		Marks point as visited, having come from parent.
+	*/
+	private void visit(int point, int parent) {
+		this.parents.put(point, parent);
+
+		if(this.numVisited == this.visited.length)
+			this.visited = Arrays.copyOf(this.visited, this.visited.length * 2);
+
+		this.visited[this.numVisited++] = point;
+	}
+
+	/*
+		Pushes point and its height onto our stack, growing it if it is full.
+	*/
+	private void push(int point, float val) {
+		if(this.stackSize == this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+			this.stackVals = Arrays.copyOf(this.stackVals, this.stackVals.length * 2);
+		}
+
+		this.stack[this.stackSize] = point;
+		this.stackVals[this.stackSize] = val;
+		this.stackSize += 1;
+	}
+
+	/*
+		Adds point to the end of our river.
+	*/
+	private void addToPath(int point) {
+		if(this.pathSize == this.path.length)
+			this.path = Arrays.copyOf(this.path, this.path.length * 2);
+
+		this.path[this.pathSize++] = point;
+	}
+
+	/*
+		Remembers that we would lower point to val.
+	*/
+	private void erode(int point, float val) {
+		if(this.numEroded == this.eroded.length) {
+			this.eroded = Arrays.copyOf(this.eroded, this.eroded.length * 2);
+			this.erodedVals = Arrays.copyOf(this.erodedVals, this.erodedVals.length * 2);
+		}
+
+		this.eroded[this.numEroded] = point;
+		this.erodedVals[this.numEroded] = val;
+		this.numEroded += 1;
+	}
+}
@@ -19,24 +19,64 @@
 package ulysses.planet.utilities.generators;
 
 import ulysses.planet.utilities.PlanetMap;
+// For keeping the plate of every point.
+import ulysses.planet.Plates;
 
 // For keeping track of points and centers of plates.
 import java.awt.Point;
 // For random color picking.
 import java.awt.Color;
-// For maintaining border lists for each plate.
-import java.util.ArrayList;
-// For choosing points.
+// For growing plates at the same time.
+import ulysses.planet.utilities.ParallelRange;
+import java.util.concurrent.ForkJoinPool;
+// For claiming crust from many threads.
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+// For growing border lists.
+import java.util.Arrays;
+// For the constructor that takes a java.util.Random.
 import java.util.Random;
 
-public class TectonicsMapGenerator extends MapGenerator {
+public class TectonicsMapGenerator extends MapGenerator implements PlateGenerator {
+	// The HashRandom layers we use. One for choosing plate centers,
+	// one for growing plates, and one for the value of each plate.
+	private static final int CENTER_X_LAYER = 0;
+	private static final int CENTER_Y_LAYER = 1;
+	private static final int GROWTH_LAYER = 2;
+	private static final int VALUE_LAYER = 3;
+	// How many points each border can hold before we grow it.
+	private static final int INITIAL_BORDER_SIZE = 64;
+	// The most plates each thread grows at a time. We only grow a round of
+	// plates in parallel if there are more active plates than this.
+	private static final int PLATES_PER_TASK = 256;
+	// Lets us compare and set points of the crust array.
+	private static final VarHandle CRUST = MethodHandles.arrayElementVarHandle(int[].class);
+
 	// Used to generate the correct number of plates.
 	private int numPlates;
+	// The plates of the last map we generated.
+	private Plates plates;
+	// If true, we grow plates on many threads at once.
+	private boolean parallel;
+	// What we grow plates on if we are parallel.
+	private ForkJoinPool pool;
 
 	public TectonicsMapGenerator(Random rand) {
 		super(rand);
 
 		this.numPlates = 20;
+		this.plates = null;
+		this.parallel = true;
+		this.pool = ForkJoinPool.commonPool();
+	}
+
+	public TectonicsMapGenerator(long seed) {
+		super(seed);
+
+		this.numPlates = 20;
+		this.plates = null;
+		this.parallel = true;
+		this.pool = ForkJoinPool.commonPool();
 	}
 
 	public int getNumPlates() {
@@ -50,6 +90,37 @@ public class TectonicsMapGenerator extends MapGenerator {
 		this.numPlates = val;
 	}
 
+	public Plates getPlates() {
+		return this.plates;
+	}
+
+	public boolean getParallel() {
+		return this.parallel;
+	}
+
+	/*
+		If true, rounds with enough growing plates are split between threads.
+		This gives exactly the same map as growing them one at a time.
+	*/
+	public void setParallel(boolean val) {
+		this.parallel = val;
+	}
+
+	public ForkJoinPool getPool() {
+		return this.pool;
+	}
+
+	public void setPool(ForkJoinPool val) {
+		if(val == null)
+			val = ForkJoinPool.commonPool();
+
+		this.pool = val;
+	}
+
+	protected long combineParameterHash(long result) {
+		return HashRandom.combine(super.combineParameterHash(result), this.numPlates);
+	}
+
 	/*
 		The main driver for generating the tectonics map
 	*/
@@ -68,6 +139,9 @@ public class TectonicsMapGenerator extends MapGenerator {
 		choosePlateCenters(center, crust);
 		computeTectonicData(result, center, crust);
 
+		// Growth wraps around vertically too, so the plates do.
+		this.plates = new Plates(this.width, this.height, this.numPlates, crust, true);
+
 		return result;
 	}
 
@@ -75,7 +149,8 @@ public class TectonicsMapGenerator extends MapGenerator {
 		Initializes the plate growing process by choosing the center of
 		each plate. We do so by continuously selecting a random point until
 		it is not apart of any plate. We mark it as part of a plate by setting
-		the point in crust to the id of that plate.
+		the point in crust to the id of that plate. The random point for plate i
+		on attempt a is given by our HashRandom at (i, a).
 
 		ARGUMENTS:
 			centers - Where we store the plate centers.
@@ -83,11 +158,15 @@ public class TectonicsMapGenerator extends MapGenerator {
 	*/
 	private void choosePlateCenters(Point[] centers, int[] crust) {
 		int x, y;
+		int attempt;
 
 		for(int i = 0; i < this.numPlates; ++i) {
+			attempt = 0;
+
 			do {
-				x = rand.nextInt(this.width);
-				y = rand.nextInt(this.height);
+				x = this.hashRand.nextInt(this.width, i, attempt, 0, CENTER_X_LAYER);
+				y = this.hashRand.nextInt(this.height, i, attempt, 0, CENTER_Y_LAYER);
+				attempt += 1;
 			} while(crust[y * this.width + x] != -1);
 
 			crust[y * this.width + x] = i;
@@ -101,7 +180,18 @@ public class TectonicsMapGenerator extends MapGenerator {
 		of every point at the current edge of the plate. This implies each
 		point in this list is adjacent to unmarked crust. We pick a random point
 		in this list, remove it, and add its unmarked neighbors to the list.
-		We repeat this process until no more plates can grow.
+		We repeat this process until no more plates can grow. The random point
+		plate i removes on its k-th step is given by our HashRandom at (i, k).
+
+		Each border is an array of point indices (y * width + x) and a size. To
+		remove a point, we move the last point of the border into its place. Since
+		the point we remove is random anyway, the order of the border does not
+		matter, and this way removing is O(1) rather than O(n). We also keep a list
+		of the plates that can still grow, so plates that are done cost nothing.
+
+		Plates grow in rounds, where every plate that can still grow takes one step.
+		If we are parallel and there are enough plates, a round is done with
+		growRoundParallel, which gives exactly the same result as growRound.
 
 		In a more scientifically acurate model, we would compute tectonic
 		data using age data, plate collision data, plate density, etc. For
@@ -117,82 +207,208 @@ public class TectonicsMapGenerator extends MapGenerator {
 	*/
 	private void computeTectonicData(PlanetMap tectonicsMap, Point[] center, int[] crust) {
 		// Keeps track of the crust points on the edge of each plate.
-		ArrayList<Point>[] border = new ArrayList[this.numPlates];
-		// If >= 1, Means we have at least one edge crust with points we
-		// have not checked the neighbors of.
-		int maxBorderSize;
-		// Use this in place of calling count() repeadetly
-		int currBorderSize;
-		// Used when adding points to border.
-		Point currPoint;
-		// Used to simplify some of the calculations in checking
-		// neighbors
-		int x, y;
-		int l, r, u, d;
+		int[][] border = new int[this.numPlates][];
+		// The number of points in each border.
+		int[] borderSize = new int[this.numPlates];
+		// The plates that can still grow, in order of id.
+		int[] active = new int[this.numPlates];
+		int numActive = this.numPlates;
+		// The number of points each plate has removed from its border.
+		int[] steps = new int[this.numPlates];
+		// The four neighbors of the point each active plate removed this round.
+		int[] neighbors = new int[4 * this.numPlates];
 
 		// Initialize the border list with the centers.
 		for(int i = 0; i < this.numPlates; ++i) {
 			tectonicsMap.setData((int)center[i].getX(), (int)center[i].getY(), 0);
-			border[i] = new ArrayList<>();
-			border[i].add(new Point(center[i]));
+			border[i] = new int[INITIAL_BORDER_SIZE];
+			border[i][0] = (int)center[i].getY() * this.width + (int)center[i].getX();
+			borderSize[i] = 1;
+			active[i] = i;
+		}
+
+		while(numActive > 0) {
+			if(this.parallel && numActive > PLATES_PER_TASK)
+				growRoundParallel(active, numActive, border, borderSize, steps, neighbors, crust);
+			else
+				growRound(active, numActive, border, borderSize, steps, neighbors, crust);
+
+			numActive = removeFinishedPlates(active, numActive, borderSize);
+		}
+
+		generateTectonicValues(tectonicsMap, crust);
+	}
+
+	/*
+		Grows every active plate by one step, one plate at a time in order of id.
+		Each plate removes a random point from its border, and takes every
+		neighbor of it that no plate owns yet.
+
+		ARGUMENTS:
+			active - the plates that can still grow, in order of id.
+			numActive - the number of plates in active.
+			border - the border list for each plate.
+			borderSize - the number of points in each border.
+			steps - the number of points each plate has removed.
+			neighbors - room for four neighbors per active plate.
+			crust - the crust map.
+	*/
+	private void growRound(int[] active, int numActive, int[][] border, int[] borderSize,
+						   int[] steps, int[] neighbors, int[] crust)
+	{
+		int plate;
+
+		for(int a = 0; a < numActive; ++a) {
+			plate = active[a];
+			getNeighbors(removeGrowthPoint(plate, border, borderSize, steps), neighbors, 4 * a);
+
+			for(int k = 4 * a; k < 4 * a + 4; ++k)
+				addCrustToPlate(neighbors[k], plate, border, borderSize, crust);
 		}
+	}
+
+	/*
+		Grows every active plate by one step, the same way growRound does, but
+		with the plates split between threads. We do this in two phases:
 
-		// All borders now have one point in them.
-		maxBorderSize = 1;
-		while(maxBorderSize > 0) {
-			// Assume it is 0 for now. If all plates have a border size of 0, then
-			// we cannot add anymore crust to any plate so we are done. Otherwise,
-			// we can still add crust to at least one plate.
-			maxBorderSize = 0;
+		First, each plate removes a random point from its border, and claims each
+		neighbor that no plate owned at the start of the round. An unowned point
+		claimed by plate i is marked -2 - i in crust. If two plates claim the same
+		point, the lower id wins.
 
-			for(int i = 0; i < this.numPlates; ++i) {
-				if(border[i].isEmpty())
-					continue;
+		Second, each plate takes every point it won.
 
-				currBorderSize = border[i].size();
-				maxBorderSize = currBorderSize > maxBorderSize ? currBorderSize : maxBorderSize;
+		In growRound, the lower id would have taken a contested point first, so
+		both give the same crust and the same borders. The random points only
+		depend on each plate's own border and step, so the result does not depend
+		on the number of threads.
 
-				currPoint = new Point((Point)border[i].remove(rand.nextInt(currBorderSize)));
+		ARGUMENTS:
+			See growRound.
+	*/
+	private void growRoundParallel(final int[] active, int numActive, final int[][] border,
+								   final int[] borderSize, final int[] steps,
+								   final int[] neighbors, final int[] crust)
+	{
+		ParallelRange.run(this.pool, 0, numActive, PLATES_PER_TASK, (start, end) -> {
+			int plate;
+
+			for(int a = start; a < end; ++a) {
+				plate = active[a];
+				getNeighbors(removeGrowthPoint(plate, border, borderSize, steps), neighbors, 4 * a);
+
+				for(int k = 4 * a; k < 4 * a + 4; ++k)
+					claimCrust(neighbors[k], plate, crust);
+			}
+		});
 
-				x = (int)currPoint.getX();
-				y = (int)currPoint.getY();
+		ParallelRange.run(this.pool, 0, numActive, PLATES_PER_TASK, (start, end) -> {
+			int plate;
 
-				l = ((x - 1) % this.width + this.width) % this.width;
-				r = ((x + 1) % this.width + this.width) % this.width;
-				u = ((y - 1) % this.height + this.height) % this.height;
-				d = ((y + 1) % this.height + this.height) % this.height;
+			for(int a = start; a < end; ++a) {
+				plate = active[a];
 
-				addCrustToPlate(new Point(l, y), i, border, crust);
-				addCrustToPlate(new Point(r, y), i, border, crust);
-				addCrustToPlate(new Point(x, u), i, border, crust);
-				addCrustToPlate(new Point(x, d), i, border, crust);
+				for(int k = 4 * a; k < 4 * a + 4; ++k) {
+					if(crust[neighbors[k]] == -2 - plate) {
+						crust[neighbors[k]] = -1;
+						addCrustToPlate(neighbors[k], plate, border, borderSize, crust);
+					}
+				}
 			}
+		});
+	}
+
+	/*
+		Claims point for plate, unless a plate owns it, or a plate with a lower id
+		has already claimed it this round.
+	*/
+	private void claimCrust(int point, int plate, int[] crust) {
+		int claim = -2 - plate;
+		int curr;
+
+		do {
+			curr = (int)CRUST.getVolatile(crust, point);
+
+			// Owned, or claimed by this plate or a plate with a lower id.
+			if(curr >= 0 || (curr < -1 && curr >= claim))
+				return;
+		} while(!CRUST.compareAndSet(crust, point, curr, claim));
+	}
+
+	/*
+		Removes a random point from the border of plate by moving the last
+		point of the border into its place.
+
+		RETURNS:
+			the point we removed.
+	*/
+	private int removeGrowthPoint(int plate, int[][] border, int[] borderSize, int[] steps) {
+		int i = this.hashRand.nextInt(borderSize[plate], plate, steps[plate], 0, GROWTH_LAYER);
+		int result = border[plate][i];
+
+		border[plate][i] = border[plate][borderSize[plate] - 1];
+		borderSize[plate] -= 1;
+		steps[plate] += 1;
+
+		return result;
+	}
+
+	/*
+		Stores the left, right, up, and down neighbors of point in
+		result[offset] to result[offset + 3]. The map wraps both ways.
+	*/
+	private void getNeighbors(int point, int[] result, int offset) {
+		int y = point / this.width;
+		int x = point - y * this.width;
+
+		result[offset] = x == 0 ? point + this.width - 1 : point - 1;
+		result[offset + 1] = x == this.width - 1 ? point - x : point + 1;
+		result[offset + 2] = y == 0 ? point + (this.height - 1) * this.width : point - this.width;
+		result[offset + 3] = y == this.height - 1 ? x : point + this.width;
+	}
+
+	/*
+		Removes every plate with an empty border from active, keeping the rest
+		in order.
+
+		RETURNS:
+			the number of plates still in active.
+	*/
+	private int removeFinishedPlates(int[] active, int numActive, int[] borderSize) {
+		int result = 0;
+
+		for(int a = 0; a < numActive; ++a) {
+			if(borderSize[active[a]] > 0)
+				active[result++] = active[a];
 		}
 
-		generateTectonicValues(tectonicsMap, crust);
+		return result;
 	}
 
 	/*
 		Marks a point as being apart of a plate. We do so by marking its point in the crust
-		map, then adding it to the border list for the plate.
+		map, then adding it to the border list for the plate. If the border is full, we
+		double its size.
 
 		ARGUMENTS:
-			toAdd - the point to add.
+			toAdd - the index of the point to add.
 			plate - the plate to add toAdd to.
-			border - the border list for the plate.
+			border - the border list for each plate.
+			borderSize - the number of points in each border.
 			crust - the crust map.
 	*/
-	private void addCrustToPlate(Point toAdd, int plate, ArrayList<Point>[] border, int[] crust) {
-		int indexToAdd;
+	private void addCrustToPlate(int toAdd, int plate, int[][] border, int[] borderSize, int[] crust) {
+		if(crust[toAdd] != -1)
+			return;
 
-		indexToAdd = (int)toAdd.getY() * this.width + (int)toAdd.getX();
+		// Mark as apart of this plate
+		crust[toAdd] = plate;
 
-	    // Left neighbor.
-		if(crust[indexToAdd] == -1) {
-			// Mark as apart of this plate
-			crust[indexToAdd] = plate;
-			border[plate].add(toAdd);
-		}
+		if(borderSize[plate] == border[plate].length)
+			border[plate] = Arrays.copyOf(border[plate], border[plate].length * 2);
+
+		border[plate][borderSize[plate]] = toAdd;
+		borderSize[plate] += 1;
 	}
 
 	/*
@@ -210,7 +426,7 @@ public class TectonicsMapGenerator extends MapGenerator {
 		float[] tectonics = new float[this.numPlates];
 
 		for(int i = 0; i < this.numPlates; ++i)
-			tectonics[i] = (float)rand.nextDouble();
+			tectonics[i] = this.hashRand.nextFloat(i, 0, 0, VALUE_LAYER);
 
 		for(int i = 0; i < crust.length; ++i)
 			tectonicsMap.setData(i, tectonics[crust[i]]);
@@ -0,0 +1,134 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	Keeps the most recently used tiles of a MapGenerator, so that we only
+	generate the part of the world near the player. When we have more than
+	maxTiles tiles, we throw away the one that was used longest ago.
+
+	Tiles are stored in a LinkedHashMap in access order, so the least recently
+	used tile is always the first one. Each tile is keyed by its tile
+	coordinates packed into one long.
+
+	Every method is synchronized, so a cache can be shared between threads.
+	Note that this means a thread generating a tile keeps every other thread
+	waiting until it is done.
+*/
+
+package ulysses.planet.utilities.generators;
+
+import ulysses.planet.utilities.PlanetMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TileCache {
+	// The number of tiles we keep if given a bad number.
+	public static final int DEFAULT_MAX_TILES = 64;
+
+	// Makes each tile we do not have.
+	private MapGenerator generator;
+	// The width and height of each tile.
+	private int tileSize;
+	// The most tiles we keep at once.
+	private int maxTiles;
+	// Our tiles, from least to most recently used.
+	private LinkedHashMap<Long, PlanetMap> tiles;
+
+	public TileCache(MapGenerator generator, int tileSize, int maxTiles) {
+		this.generator = generator;
+
+		if(tileSize < 1)
+			tileSize = MapGenerator.DEFAULT_TILE_SIZE;
+		this.tileSize = tileSize;
+
+		setMaxTiles(maxTiles);
+
+		this.tiles = new LinkedHashMap<Long, PlanetMap>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Long, PlanetMap> eldest) {
+				return size() > TileCache.this.maxTiles;
+			}
+		};
+	}
+
+	public MapGenerator getGenerator() {
+		return this.generator;
+	}
+
+	public int getTileSize() {
+		return this.tileSize;
+	}
+
+	public synchronized int getMaxTiles() {
+		return this.maxTiles;
+	}
+
+	/*
+		Sets the most tiles we keep. If we already have more than that, we
+		throw away the least recently used ones on the next new tile.
+	*/
+	public synchronized void setMaxTiles(int val) {
+		if(val < 1)
+			val = DEFAULT_MAX_TILES;
+
+		this.maxTiles = val;
+	}
+
+	/*
+		Returns how many tiles we have right now.
+	*/
+	public synchronized int getNumTiles() {
+		return this.tiles.size();
+	}
+
+	/*
+		Throws away every tile. Call this if the generator changes.
+	*/
+	public synchronized void clear() {
+		this.tiles.clear();
+	}
+
+	/*
+		Returns tile (tileX, tileY), generating it if we do not have it.
+		Do not modify the tile, since we give the same one to everyone
+		who asks for it.
+
+		RETURNS:
+			the tile, or null if we have no generator.
+	*/
+	public synchronized PlanetMap getTile(int tileX, int tileY) {
+		if(this.generator == null)
+			return null;
+
+		Long key = getKey(tileX, tileY);
+		PlanetMap result = this.tiles.get(key);
+
+		if(result == null) {
+			result = this.generator.generateTile(tileX, tileY, this.tileSize);
+			this.tiles.put(key, result);
+		}
+
+		return result;
+	}
+
+	/*
+		Returns the value at world point (x, y), from whichever tile has it.
+
+		RETURNS:
+			the value, or 0 if we have no generator.
+	*/
+	public synchronized float getValue(int x, int y) {
+		PlanetMap tile = getTile(Math.floorDiv(x, this.tileSize), Math.floorDiv(y, this.tileSize));
+
+		if(tile == null)
+			return 0.0f;
+
+		return tile.getData(Math.floorMod(x, this.tileSize), Math.floorMod(y, this.tileSize));
+	}
+
+	/*
+		Packs tile coordinates into one key. tileX is the high 32 bits, and
+		tileY is the low 32 bits.
+	*/
+	private static long getKey(int tileX, int tileY) {
+		return ((long)tileX << 32) | (tileY & 0xffffffffL);
+	}
+}
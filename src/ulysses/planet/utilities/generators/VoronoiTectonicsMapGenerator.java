@@ -0,0 +1,434 @@
+// Liam Wynn, 10/17/2026, Ulysses
+
+/*
+	A quicker way to make a tectonics map than the TectonicsMapGenerator.
+	Rather than grow each plate a point at a time, every point belongs to
+	the plate whose center is closest to it. That is, the plates are the
+	cells of a Voronoi diagram of the plate centers.
+
+	We find the closest center of every point with jump flooding. Each point
+	keeps the closest plate it knows of. For a step size k, every point looks
+	at the plates known by the 8 points k away from it, and keeps whichever is
+	closest. We do this for k = N/2, N/4, ..., 1, where N is the smallest power
+	of two at least as big as the map, and then once more with k = 1 to fix the
+	few points the first passes get wrong. So the work is O(N log N), and every
+	step computes its rows at the same time.
+
+	Like the rest of the world, the map wraps around horizontally: a point at
+	the far right is next to a point at the far left.
+
+	Voronoi cells have straight borders, which do not look much like plates. So
+	we can warp the distances with noise: before measuring the distance from a
+	point to a center, we move the point by up to warpStrength points in a random,
+	smooth direction. Warping makes the borders wander, like the borders of the
+	TectonicsMapGenerator.
+
+	Like the TectonicsMapGenerator, every point of a plate gets the same random
+	value from 0 to 1.
+*/
+
+package ulysses.planet.utilities.generators;
+
+import ulysses.planet.utilities.PlanetMap;
+// For keeping the plate of every point.
+import ulysses.planet.Plates;
+// For computing rows at the same time.
+import ulysses.planet.utilities.ParallelRange;
+import java.util.concurrent.ForkJoinPool;
+// For the constructor that takes a java.util.Random.
+import java.util.Random;
+
+public class VoronoiTectonicsMapGenerator extends MapGenerator implements PlateGenerator {
+	// The HashRandom layers we use. One for choosing plate centers,
+	// one for the value of each plate, and one for warping.
+	private static final int CENTER_X_LAYER = 0;
+	private static final int CENTER_Y_LAYER = 1;
+	private static final int VALUE_LAYER = 3;
+	private static final int WARP_LAYER = 4;
+	// Roughly how many points each thread computes at a time.
+	private static final int POINTS_PER_STRIPE = 16384;
+
+	// Used to generate the correct number of plates.
+	private int numPlates;
+	// The plates of the last map we generated.
+	private Plates plates;
+	// The farthest we move a point when warping, in points.
+	// If this is 0, we do not warp.
+	private float warpStrength;
+	// The distance between the random directions we blend to warp.
+	// Larger values make the borders wander more slowly.
+	private int warpScale;
+	// What we compute rows on.
+	private ForkJoinPool pool;
+
+	public VoronoiTectonicsMapGenerator(Random rand) {
+		super(rand);
+
+		this.numPlates = 20;
+		this.plates = null;
+		this.warpStrength = 0.0f;
+		this.warpScale = 32;
+		this.pool = ForkJoinPool.commonPool();
+	}
+
+	public VoronoiTectonicsMapGenerator(long seed) {
+		super(seed);
+
+		this.numPlates = 20;
+		this.plates = null;
+		this.warpStrength = 0.0f;
+		this.warpScale = 32;
+		this.pool = ForkJoinPool.commonPool();
+	}
+
+	public int getNumPlates() {
+		return this.numPlates;
+	}
+
+	public void setNumPlates(int val) {
+		if(val <= 0)
+			val = 20;
+
+		this.numPlates = val;
+	}
+
+	public Plates getPlates() {
+		return this.plates;
+	}
+
+	public float getWarpStrength() {
+		return this.warpStrength;
+	}
+
+	public void setWarpStrength(float val) {
+		if(val < 0)
+			val = 0.0f;
+
+		this.warpStrength = val;
+	}
+
+	public int getWarpScale() {
+		return this.warpScale;
+	}
+
+	public void setWarpScale(int val) {
+		if(val <= 0)
+			val = 32;
+
+		this.warpScale = val;
+	}
+
+	public ForkJoinPool getPool() {
+		return this.pool;
+	}
+
+	public void setPool(ForkJoinPool val) {
+		if(val == null)
+			val = ForkJoinPool.commonPool();
+
+		this.pool = val;
+	}
+
+	protected long combineParameterHash(long result) {
+		result = super.combineParameterHash(result);
+
+		result = HashRandom.combine(result, this.numPlates);
+		result = HashRandom.combine(result, Float.floatToIntBits(this.warpStrength));
+		result = HashRandom.combine(result, this.warpScale);
+
+		return result;
+	}
+
+	/*
+		The main driver for generating the tectonics map. We choose the plate
+		centers, find the closest plate of every point with jump flooding,
+		then give each point the value of its plate. We keep the plate of each
+		point as our Plates.
+	*/
+	public PlanetMap generateMap() {
+		// What we will return.
+		PlanetMap result = new PlanetMap(this.width, this.height);
+		// We cannot have more plates than points.
+		int count = Math.min(this.numPlates, this.width * this.height);
+		// The center of each plate.
+		int[] centerX = new int[count];
+		int[] centerY = new int[count];
+		// Stores which plates own which crust.
+		int[] crust;
+
+		choosePlateCenters(centerX, centerY);
+		crust = jumpFlood(centerX, centerY, getWarpLattice());
+		generateTectonicValues(result, crust, count);
+
+		this.plates = new Plates(this.width, this.height, count, crust, false);
+
+		return result;
+	}
+
+	/*
+		Chooses the center of each plate. Like the TectonicsMapGenerator, we keep
+		selecting a random point until it is not the center of another plate. The
+		random point for plate i on attempt a is given by our HashRandom at (i, a).
+
+		ARGUMENTS:
+			centerX, centerY - where we store the plate centers.
+	*/
+	private void choosePlateCenters(int[] centerX, int[] centerY) {
+		// The plate centered at each point, or -1 for none.
+		int[] taken = newCrust();
+		int x, y;
+		int attempt;
+
+		for(int i = 0; i < centerX.length; ++i) {
+			attempt = 0;
+
+			do {
+				x = this.hashRand.nextInt(this.width, i, attempt, 0, CENTER_X_LAYER);
+				y = this.hashRand.nextInt(this.height, i, attempt, 0, CENTER_Y_LAYER);
+				attempt += 1;
+			} while(taken[y * this.width + x] != -1);
+
+			taken[y * this.width + x] = i;
+			centerX[i] = x;
+			centerY[i] = y;
+		}
+	}
+
+	/*
+		Finds the closest plate to every point with jump flooding. Each step reads
+		the plates from one buffer and writes them to the other, so no point sees
+		a plate from the step it is in. Each point looks at its neighbors in the
+		same order, and breaks ties by the lower plate id, so the result does not
+		depend on the number of threads.
+
+		ARGUMENTS:
+			centerX, centerY - the center of each plate.
+			lattice - the random directions to warp with, or null to not warp.
+
+		RETURNS:
+			the plate that owns each point.
+	*/
+	private int[] jumpFlood(final int[] centerX, final int[] centerY, final float[] lattice) {
+		int[] src = newCrust();
+		int[] dst = new int[src.length];
+		int[] temp;
+		int size = 1;
+		int grain = Math.max(1, POINTS_PER_STRIPE / this.width);
+
+		for(int i = 0; i < centerX.length; ++i)
+			src[centerY[i] * this.width + centerX[i]] = i;
+
+		while(size < Math.max(this.width, this.height))
+			size *= 2;
+
+		// The steps N/2, N/4, ..., 1, then 1 again.
+		for(int k = size / 2; k >= 0; k /= 2) {
+			final int step = k == 0 ? 1 : k;
+			final int[] from = src;
+			final int[] to = dst;
+			// The wrapped column step to the left and right of each column.
+			final int[] left = new int[this.width];
+			final int[] right = new int[this.width];
+
+			for(int x = 0; x < this.width; ++x) {
+				left[x] = Math.floorMod(x - step, this.width);
+				right[x] = Math.floorMod(x + step, this.width);
+			}
+
+			ParallelRange.run(this.pool, 0, this.height, grain, (start, end) ->
+				floodRows(from, to, step, left, right, centerX, centerY, lattice, start, end));
+
+			temp = src;
+			src = dst;
+			dst = temp;
+
+			if(k == 0)
+				break;
+		}
+
+		return src;
+	}
+
+	/*
+		Does one jump flooding step for rows start to end - 1.
+
+		ARGUMENTS:
+			from - the closest plate each point knew of before this step.
+			to - where we store the closest plate each point knows of after this step.
+			step - how far away the points we look at are.
+			left, right - the column step points to the left and right of each column.
+			centerX, centerY - the center of each plate.
+			lattice - the random directions to warp with, or null to not warp.
+			start, end - the rows to compute.
+	*/
+	private void floodRows(int[] from, int[] to, int step, int[] left, int[] right,
+						   int[] centerX, int[] centerY, float[] lattice, int start, int end)
+	{
+		// The warped position of the current point.
+		float[] pos = new float[2];
+		int best, plate, row, col;
+		float bestDist, dist;
+
+		for(int y = start; y < end; ++y) {
+			for(int x = 0; x < this.width; ++x) {
+				warp(x, y, lattice, pos);
+
+				best = -1;
+				bestDist = Float.MAX_VALUE;
+
+				for(int ny = y - step; ny <= y + step; ny += step) {
+					// Rows do not wrap around.
+					if(ny < 0 || ny >= this.height)
+						continue;
+
+					row = ny * this.width;
+
+					for(int i = 0; i < 3; ++i) {
+						col = i == 0 ? left[x] : (i == 1 ? x : right[x]);
+						plate = from[row + col];
+						if(plate == -1 || plate == best)
+							continue;
+
+						dist = getDistSquared(pos[0], pos[1], centerX[plate], centerY[plate]);
+
+						if(dist < bestDist || (dist == bestDist && plate < best)) {
+							best = plate;
+							bestDist = dist;
+						}
+					}
+				}
+
+				to[y * this.width + x] = best;
+			}
+		}
+	}
+
+	/*
+		Returns the squared distance from (x, y) to (cx, cy), wrapping
+		around horizontally.
+	*/
+	private float getDistSquared(float x, float y, int cx, int cy) {
+		float dx = Math.abs(x - cx);
+		float dy = y - cy;
+
+		if(dx > this.width * 0.5f)
+			dx = this.width - dx;
+
+		return dx * dx + dy * dy;
+	}
+
+	/*
+		Builds the random directions we warp points with. We place a random
+		direction every warpScale points, and blend between them. The number
+		of columns divides the width evenly, so that the warp wraps around
+		smoothly.
+
+		RETURNS:
+			for each lattice point (i, j), the x and y of its direction at
+			2 * (j * columns + i) and 2 * (j * columns + i) + 1. Each is
+			between -1 and 1. Returns null if we do not warp.
+	*/
+	private float[] getWarpLattice() {
+		if(this.warpStrength == 0)
+			return null;
+
+		int cols = getLatticeColumns();
+		int rows = this.height / this.warpScale + 2;
+		float[] result = new float[2 * cols * rows];
+
+		for(int j = 0; j < rows; ++j) {
+			for(int i = 0; i < cols; ++i) {
+				result[2 * (j * cols + i)] = 2.0f * this.hashRand.nextFloat(i, j, 0, WARP_LAYER) - 1.0f;
+				result[2 * (j * cols + i) + 1] = 2.0f * this.hashRand.nextFloat(i, j, 1, WARP_LAYER) - 1.0f;
+			}
+		}
+
+		return result;
+	}
+
+	/*
+		The number of columns of our warp lattice. At least 1.
+	*/
+	private int getLatticeColumns() {
+		return Math.max(1, Math.round((float)this.width / this.warpScale));
+	}
+
+	/*
+		Stores the warped position of point (x, y) in result. We blend the
+		directions of the four lattice points around the point, and move the
+		point that way by up to warpStrength.
+
+		ARGUMENTS:
+			x, y - the point to warp.
+			lattice - the random directions, or null to not warp.
+			result - where we store the warped x and y.
+	*/
+	private void warp(int x, int y, float[] lattice, float[] result) {
+		result[0] = x;
+		result[1] = y;
+
+		if(lattice == null)
+			return;
+
+		int cols = getLatticeColumns();
+		// The point in lattice coordinates.
+		float lx = (float)x * cols / this.width;
+		float ly = (float)y / this.warpScale;
+		int i0 = (int)lx;
+		int j0 = (int)ly;
+		int i1 = (i0 + 1) % cols;
+		float hBlend = lx - i0;
+		float vBlend = ly - j0;
+		int c00 = 2 * (j0 * cols + i0);
+		int c10 = 2 * (j0 * cols + i1);
+		int c01 = 2 * ((j0 + 1) * cols + i0);
+		int c11 = 2 * ((j0 + 1) * cols + i1);
+
+		for(int d = 0; d < 2; ++d) {
+			float top = interp(lattice[c00 + d], lattice[c10 + d], hBlend);
+			float bot = interp(lattice[c01 + d], lattice[c11 + d], hBlend);
+
+			result[d] += this.warpStrength * interp(top, bot, vBlend);
+		}
+	}
+
+	/*
+		Performs linear interpolation on two values.
+	*/
+	private float interp(float x0, float x1, float alpha) {
+		return x0 * (1 - alpha) + alpha * x1;
+	}
+
+	/*
+		Returns a crust map where no plate owns any point.
+	*/
+	private int[] newCrust() {
+		int[] result = new int[this.width * this.height];
+
+		for(int i = 0; i < result.length; ++i)
+			result[i] = -1; // -1 indicates no plate owns it.
+
+		return result;
+	}
+
+	/*
+		Sets the value of every point to the value of its plate. Each plate gets
+		a random value between 0 and 1, the same way the TectonicsMapGenerator
+		chooses them.
+
+		ARGUMENTS:
+			tectonicsMap - where we store the final values.
+			crust - maps points to plates.
+			plates - the number of plates.
+	*/
+	private void generateTectonicValues(PlanetMap tectonicsMap, int[] crust, int plates) {
+		// The values for each plate.
+		float[] tectonics = new float[plates];
+
+		for(int i = 0; i < plates; ++i)
+			tectonics[i] = this.hashRand.nextFloat(i, 0, 0, VALUE_LAYER);
+
+		for(int i = 0; i < crust.length; ++i)
+			tectonicsMap.setData(i, tectonics[crust[i]]);
+	}
+}